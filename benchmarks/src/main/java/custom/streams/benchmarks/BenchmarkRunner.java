@@ -0,0 +1,22 @@
+package custom.streams.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks (optionally filtered by a regexp) with JMH's GC profiler attached, which adds
+// gc.alloc.rate and gc.alloc.rate.norm (bytes allocated per operation) to the throughput results.
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "custom.streams.benchmarks.*")
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
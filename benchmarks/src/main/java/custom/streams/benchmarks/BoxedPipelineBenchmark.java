@@ -0,0 +1,211 @@
+package custom.streams.benchmarks;
+
+import custom.streams.Stream;
+import custom.streams.Stream2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Each operation is measured on the pull engine (Stream), the push engine (Stream2) and java.util.stream, over
+// the same boxed List<Integer> source.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BoxedPipelineBenchmark
+{
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private List<Integer> source;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.source = new ArrayList<>(this.size);
+
+        for (int i = 0; i < this.size; ++i)
+        {
+            this.source.add(i);
+        }
+    }
+
+    // map
+
+    @Benchmark
+    public List<Integer> map_stream()
+    {
+        return Stream.of(this.source).map(i -> i * 2).collect();
+    }
+
+    @Benchmark
+    public List<Integer> map_stream2()
+    {
+        return Stream2.of(this.source).map(i -> i * 2).collect();
+    }
+
+    @Benchmark
+    public List<Integer> map_jdk()
+    {
+        return this.source.stream().map(i -> i * 2).collect(Collectors.toList());
+    }
+
+    // filter
+
+    @Benchmark
+    public List<Integer> filter_stream()
+    {
+        return Stream.of(this.source).filter(i -> (i & 1) == 0).collect();
+    }
+
+    @Benchmark
+    public List<Integer> filter_stream2()
+    {
+        return Stream2.of(this.source).filter(i -> (i & 1) == 0).collect();
+    }
+
+    @Benchmark
+    public List<Integer> filter_jdk()
+    {
+        return this.source.stream().filter(i -> (i & 1) == 0).collect(Collectors.toList());
+    }
+
+    // flatMap
+
+    @Benchmark
+    public List<Integer> flatMap_stream()
+    {
+        return Stream.of(this.source).flatMap(i -> Stream.of(Arrays.asList(i, i + 1))).collect();
+    }
+
+    @Benchmark
+    public List<Integer> flatMap_stream2()
+    {
+        return Stream2.of(this.source).flatMap(i -> Stream2.of(i, i + 1)).collect();
+    }
+
+    @Benchmark
+    public List<Integer> flatMap_jdk()
+    {
+        return this.source.stream().flatMap(i -> java.util.stream.Stream.of(i, i + 1)).collect(Collectors.toList());
+    }
+
+    // take (limit)
+
+    @Benchmark
+    public List<Integer> take_stream()
+    {
+        return Stream.of(this.source).map(i -> i + 1).take(this.size / 2).collect();
+    }
+
+    @Benchmark
+    public List<Integer> take_stream2()
+    {
+        return Stream2.of(this.source).map(i -> i + 1).take(this.size / 2).collect();
+    }
+
+    @Benchmark
+    public List<Integer> take_jdk()
+    {
+        return this.source.stream().map(i -> i + 1).limit(this.size / 2).collect(Collectors.toList());
+    }
+
+    // dropWhile
+
+    @Benchmark
+    public List<Integer> dropWhile_stream()
+    {
+        int half = this.size / 2;
+        return Stream.of(this.source).dropWhile(i -> i < half).collect();
+    }
+
+    @Benchmark
+    public List<Integer> dropWhile_stream2()
+    {
+        int half = this.size / 2;
+        return Stream2.of(this.source).dropWhile(i -> i < half).collect();
+    }
+
+    @Benchmark
+    public List<Integer> dropWhile_jdk()
+    {
+        int half = this.size / 2;
+        return this.source.stream().dropWhile(i -> i < half).collect(Collectors.toList());
+    }
+
+    // collect (plain materialization)
+
+    @Benchmark
+    public List<Integer> collect_stream()
+    {
+        return Stream.of(this.source).collect();
+    }
+
+    @Benchmark
+    public List<Integer> collect_stream2()
+    {
+        return Stream2.of(this.source).collect();
+    }
+
+    @Benchmark
+    public List<Integer> collect_jdk()
+    {
+        return this.source.stream().collect(Collectors.toList());
+    }
+
+    // A longer chain, like the one in Stream.main
+
+    @Benchmark
+    public List<Integer> chain_stream()
+    {
+        return Stream.of(this.source)
+                .filter(i -> i % 2 == 0)
+                .map(i -> i + 3)
+                .filter(i -> i > 2)
+                .flatMap(i -> Stream.of(Arrays.asList(i, i + 1, i + 2)))
+                .dropWhile(i -> i < 10)
+                .collect();
+    }
+
+    @Benchmark
+    public List<Integer> chain_stream2()
+    {
+        return Stream2.of(this.source)
+                .filter(i -> i % 2 == 0)
+                .map(i -> i + 3)
+                .filter(i -> i > 2)
+                .flatMap(i -> Stream2.of(i, i + 1, i + 2))
+                .dropWhile(i -> i < 10)
+                .collect();
+    }
+
+    @Benchmark
+    public List<Integer> chain_jdk()
+    {
+        return this.source.stream()
+                .filter(i -> i % 2 == 0)
+                .map(i -> i + 3)
+                .filter(i -> i > 2)
+                .flatMap(i -> java.util.stream.Stream.of(i, i + 1, i + 2))
+                .dropWhile(i -> i < 10)
+                .collect(Collectors.toList());
+    }
+}
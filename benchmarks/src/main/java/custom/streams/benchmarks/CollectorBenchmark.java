@@ -0,0 +1,87 @@
+package custom.streams.benchmarks;
+
+import custom.streams.Collectors;
+import custom.streams.Stream;
+import custom.streams.Stream2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// groupingBy through custom.streams.Collectors on both engines, against java.util.stream.Collectors.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CollectorBenchmark
+{
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"16", "65536"})
+    public int keys;
+
+    private List<Integer> source;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.source = new ArrayList<>(this.size);
+
+        for (int i = 0; i < this.size; ++i)
+        {
+            this.source.add(i);
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, List<Integer>> groupingBy_stream()
+    {
+        int keys = this.keys;
+        return Stream.of(this.source).collect(Collectors.groupingBy(i -> i % keys, Collectors.toList()));
+    }
+
+    @Benchmark
+    public Map<Integer, List<Integer>> groupingBy_stream2()
+    {
+        int keys = this.keys;
+        return Stream2.of(this.source).collect(Collectors.groupingBy(i -> i % keys, Collectors.toList()));
+    }
+
+    @Benchmark
+    public Map<Integer, List<Integer>> groupingBy_stream2Parallel()
+    {
+        int keys = this.keys;
+        return Stream2.of(this.source).parallel().collect(Collectors.groupingBy(i -> i % keys, Collectors.toList()));
+    }
+
+    @Benchmark
+    public Map<Integer, List<Integer>> groupingBy_jdk()
+    {
+        int keys = this.keys;
+        return this.source.stream().collect(java.util.stream.Collectors.groupingBy(i -> i % keys));
+    }
+
+    @Benchmark
+    public Map<Integer, List<Integer>> groupingBy_jdkParallel()
+    {
+        int keys = this.keys;
+        return this.source.parallelStream().collect(java.util.stream.Collectors.groupingBy(i -> i % keys));
+    }
+}
@@ -0,0 +1,113 @@
+package custom.streams.benchmarks;
+
+import custom.streams.IntStream2;
+import custom.streams.Stream2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Numeric pipelines over int[] (IntStream2 / java.util.stream.IntStream) against the same work on boxed Integers,
+// to show what boxing costs per stage. Run with -prof gc (see BenchmarkRunner) for the allocation side.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PrimitivePipelineBenchmark
+{
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private int[] primitiveSource;
+    private List<Integer> boxedSource;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        this.primitiveSource = new int[this.size];
+        this.boxedSource = new ArrayList<>(this.size);
+
+        for (int i = 0; i < this.size; ++i)
+        {
+            this.primitiveSource[i] = i;
+            this.boxedSource.add(i);
+        }
+    }
+
+    // map -> filter -> sum
+
+    @Benchmark
+    public long mapFilterSum_intStream2()
+    {
+        return IntStream2.of(this.primitiveSource).map(i -> i * 2).filter(i -> i % 3 == 0).sum();
+    }
+
+    @Benchmark
+    public long mapFilterSum_boxedStream2()
+    {
+        return Stream2.of(this.boxedSource).map(i -> i * 2).filter(i -> i % 3 == 0).mapToInt(i -> i).sum();
+    }
+
+    @Benchmark
+    public long mapFilterSum_jdkIntStream()
+    {
+        return java.util.stream.IntStream.of(this.primitiveSource).map(i -> i * 2).filter(i -> i % 3 == 0).sum();
+    }
+
+    @Benchmark
+    public long mapFilterSum_jdkBoxed()
+    {
+        return this.boxedSource.stream().map(i -> i * 2).filter(i -> i % 3 == 0).mapToInt(i -> i).sum();
+    }
+
+    // flatMap -> take -> toArray
+
+    @Benchmark
+    public int[] flatMapTake_intStream2()
+    {
+        return IntStream2.of(this.primitiveSource)
+                .flatMap(i -> IntStream2.range(0, i & 3))
+                .take(this.size)
+                .toArray();
+    }
+
+    @Benchmark
+    public int[] flatMapTake_jdkIntStream()
+    {
+        return java.util.stream.IntStream.of(this.primitiveSource)
+                .flatMap(i -> java.util.stream.IntStream.range(0, i & 3))
+                .limit(this.size)
+                .toArray();
+    }
+
+    // dropWhile -> range source -> sum
+
+    @Benchmark
+    public long rangeDropWhileSum_intStream2()
+    {
+        int half = this.size / 2;
+        return IntStream2.range(0, this.size).dropWhile(i -> i < half).sum();
+    }
+
+    @Benchmark
+    public long rangeDropWhileSum_jdkIntStream()
+    {
+        int half = this.size / 2;
+        return java.util.stream.IntStream.range(0, this.size).dropWhile(i -> i < half).sum();
+    }
+}
@@ -0,0 +1,86 @@
+package custom.streams;
+
+// Index-based spliterator over (a range of) an array: exact size, cheap splits, and O(1) slicing for take/drop.
+final class ArraySpliterator<T> implements SliceableSpliterator<T>
+{
+    private final Object[] elements;
+    private int index;
+    private final int fence;
+
+    ArraySpliterator(Object[] elements, int index, int fence)
+    {
+        if (index < 0 || index > fence || fence > elements.length)
+        {
+            throw new ArrayIndexOutOfBoundsException(
+                    "Range [" + index + ", " + fence + ") out of bounds for length " + elements.length);
+        }
+
+        this.elements = elements;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public ArraySpliterator<T> slice(long skip, long limit)
+    {
+        int from = this.index + (int) Math.min(Math.max(skip, 0), this.fence - this.index);
+        int to = from + (int) Math.min(Math.max(limit, 0), this.fence - from);
+
+        return new ArraySpliterator<>(this.elements, from, to);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer1<? super T> consumer)
+    {
+        if (this.index < this.fence)
+        {
+            consumer.accept((T) this.elements[this.index++]);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(Consumer1<? super T> consumer)
+    {
+        Object[] elements = this.elements;
+        int fence = this.fence;
+
+        for (int i = this.index; i < fence; ++i)
+        {
+            consumer.accept((T) elements[i]);
+        }
+
+        this.index = fence;
+    }
+
+    @Override
+    public Spliterator<T> trySplit()
+    {
+        int lo = this.index;
+        int mid = (lo + this.fence) >>> 1;
+
+        if (lo >= mid)
+        {
+            return null;
+        }
+
+        this.index = mid;
+        return new ArraySpliterator<>(this.elements, lo, mid);
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        return this.fence - this.index;
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+}
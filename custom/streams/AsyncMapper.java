@@ -0,0 +1,146 @@
+package custom.streams;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Runs a (typically blocking) mapper on background threads with at most maxConcurrency calls in flight, for
+// mapAsync. Results come back in submission order, or in completion order when unordered. All methods are called from
+// the one thread driving the pipeline; only task completion happens elsewhere.
+final class AsyncMapper<T, U>
+{
+    // Virtual threads when the runtime has them (JDK 21+); otherwise reusable daemon threads created on demand.
+    private static final ExecutorService EXECUTOR = newExecutor();
+    // Cancels the calls of pull-mode mappers whose spliterator was dropped without being cancelled.
+    static final Cleaner CLEANER = Cleaner.create();
+
+    private final int maxConcurrency;
+    private final Function1<? super T, ? extends U> mapper;
+
+    private final ArrayDeque<FutureTask<U>> pending = new ArrayDeque<>(); // In submission order.
+    private final BlockingQueue<FutureTask<U>> completed; // In completion order; null when ordered.
+
+    AsyncMapper(int maxConcurrency, Function1<? super T, ? extends U> mapper, boolean ordered)
+    {
+        if (maxConcurrency <= 0)
+        {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+
+        this.maxConcurrency = maxConcurrency;
+        this.mapper = mapper;
+        this.completed = ordered ? null : new LinkedBlockingQueue<>();
+    }
+
+    private static ExecutorService newExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "custom-streams-map-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    boolean isFull()
+    {
+        return this.pending.size() >= this.maxConcurrency;
+    }
+
+    boolean isEmpty()
+    {
+        return this.pending.isEmpty();
+    }
+
+    void submit(T input)
+    {
+        BlockingQueue<FutureTask<U>> completed = this.completed;
+
+        FutureTask<U> task = new FutureTask<U>(() -> this.mapper.apply(input)) {
+            @Override
+            protected void done()
+            {
+                if (completed != null && !this.isCancelled())
+                {
+                    completed.add(this);
+                }
+            }
+        };
+
+        this.pending.add(task);
+        EXECUTOR.execute(task);
+    }
+
+    // Waits for the next result. If the mapper failed, or the wait is interrupted, every outstanding call is
+    // cancelled and the failure is rethrown (unchecked exceptions as they are, anything else wrapped).
+    U next()
+    {
+        try
+        {
+            FutureTask<U> task;
+
+            if (this.completed == null)
+            {
+                task = this.pending.poll();
+            }
+            else
+            {
+                task = this.completed.take();
+                this.pending.remove(task);
+            }
+
+            return task.get();
+        }
+        catch (ExecutionException e)
+        {
+            this.cancel();
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+
+            throw new CompletionException(cause);
+        }
+        catch (InterruptedException e)
+        {
+            this.cancel();
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    // Interrupts calls still in flight and forgets them.
+    void cancel()
+    {
+        for (FutureTask<U> task : this.pending)
+        {
+            task.cancel(true);
+        }
+
+        this.pending.clear();
+
+        if (this.completed != null)
+        {
+            this.completed.clear();
+        }
+    }
+}
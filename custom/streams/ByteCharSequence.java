@@ -0,0 +1,49 @@
+package custom.streams;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Zero-copy CharSequence view over a ByteBuffer, one char per byte (ASCII / ISO-8859-1). Only toString copies.
+final class ByteCharSequence implements CharSequence
+{
+    private final ByteBuffer bytes;
+
+    ByteCharSequence(ByteBuffer bytes)
+    {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int length()
+    {
+        return this.bytes.remaining();
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= this.bytes.remaining())
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        return (char) (this.bytes.get(this.bytes.position() + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        if (start < 0 || end > this.bytes.remaining() || start > end)
+        {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.length());
+        }
+
+        return new ByteCharSequence(this.bytes.slice(this.bytes.position() + start, end - start));
+    }
+
+    @Override
+    public String toString()
+    {
+        return StandardCharsets.ISO_8859_1.decode(this.bytes.duplicate()).toString();
+    }
+}
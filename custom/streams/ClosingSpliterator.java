@@ -0,0 +1,93 @@
+package custom.streams;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The pulled result of a Spiller, for the spilling stages of Stream2. The spiller is closed (deleting any spill files
+// it still holds) once every split of the result has been traversed to the end, or else once all of the splits are
+// garbage: a pipeline that stops early just drops its spliterators, and the files go with them.
+final class ClosingSpliterator<T> implements Spliterator<T>
+{
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // Shared by all the splits of one result. The spiller itself mustn't reference it, or it would never be garbage.
+    private static final class Owner
+    {
+        final AtomicInteger openSplits = new AtomicInteger(1);
+        Cleaner.Cleanable cleanable;
+    }
+
+    private final Spliterator<T> elements;
+    private final Owner owner;
+    private boolean isFinished = false;
+
+    ClosingSpliterator(Spliterator<T> elements, Spiller<?, T> spiller)
+    {
+        this(elements, new Owner());
+        this.owner.cleanable = CLEANER.register(this.owner, spiller::close);
+    }
+
+    private ClosingSpliterator(Spliterator<T> elements, Owner owner)
+    {
+        this.elements = elements;
+        this.owner = owner;
+    }
+
+    private void finish()
+    {
+        if (!this.isFinished)
+        {
+            this.isFinished = true;
+
+            if (this.owner.openSplits.decrementAndGet() == 0)
+            {
+                this.owner.cleanable.clean();
+            }
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer1<? super T> consumer)
+    {
+        if (this.elements.tryAdvance(consumer))
+        {
+            return true;
+        }
+
+        this.finish();
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer1<? super T> consumer)
+    {
+        this.elements.forEachRemaining(consumer);
+        this.finish();
+    }
+
+    @Override
+    public Spliterator<T> trySplit()
+    {
+        Spliterator<T> prefix = this.elements.trySplit();
+
+        if (prefix == null)
+        {
+            return null;
+        }
+
+        this.owner.openSplits.incrementAndGet();
+        return new ClosingSpliterator<>(prefix, this.owner);
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        return this.elements.estimateSize();
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return this.elements.characteristics();
+    }
+}
@@ -0,0 +1,80 @@
+package custom.streams;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Splits the source down to roughly (parallelism * 4) leaves, accumulates each leaf into its own container,
+// and combines the containers back up the tree left-to-right, so encounter order is preserved.
+@SuppressWarnings("serial")
+final class CollectTask<T, A> extends RecursiveTask<A>
+{
+    private static final int LEAVES_PER_THREAD = 4;
+
+    private final Spliterator<? extends T> elements;
+    private final Collector<? super T, A, ?> collector;
+    private final long sizeThreshold;
+    private final int depth;
+
+    CollectTask(Spliterator<? extends T> elements, Collector<? super T, A, ?> collector)
+    {
+        this(elements, collector, sizeThreshold(elements.estimateSize()), 0);
+    }
+
+    private CollectTask(
+            Spliterator<? extends T> elements,
+            Collector<? super T, A, ?> collector,
+            long sizeThreshold,
+            int depth)
+    {
+        this.elements = elements;
+        this.collector = collector;
+        this.sizeThreshold = sizeThreshold;
+        this.depth = depth;
+    }
+
+    static long sizeThreshold(long estimatedSize)
+    {
+        long threshold = estimatedSize / (ForkJoinPool.getCommonPoolParallelism() * LEAVES_PER_THREAD);
+        return Math.max(threshold, 1);
+    }
+
+    // An unknown size (Long.MAX_VALUE, e.g. after flatMap) doesn't shrink as the spliterator splits, so splitting
+    // then stops by depth instead, at about as many leaves as a sized source gets.
+    static boolean shouldSplit(long estimatedSize, long sizeThreshold, int depth)
+    {
+        if (estimatedSize == Long.MAX_VALUE)
+        {
+            int leaves = ForkJoinPool.getCommonPoolParallelism() * LEAVES_PER_THREAD;
+            return depth < 32 - Integer.numberOfLeadingZeros(leaves - 1);
+        }
+
+        return estimatedSize > sizeThreshold;
+    }
+
+    @Override
+    protected A compute()
+    {
+        Spliterator<? extends T> prefix;
+
+        if (shouldSplit(this.elements.estimateSize(), this.sizeThreshold, this.depth)
+                && (prefix = this.elements.trySplit()) != null)
+        {
+            int depth = this.depth + 1;
+            CollectTask<T, A> left = new CollectTask<>(prefix, this.collector, this.sizeThreshold, depth);
+            CollectTask<T, A> right = new CollectTask<>(this.elements, this.collector, this.sizeThreshold, depth);
+
+            left.fork();
+            A rightAcc = right.compute();
+            A leftAcc = left.join();
+
+            return this.collector.combiner().apply(leftAcc, rightAcc);
+        }
+
+        A acc = this.collector.supplier().get();
+        Consumer2<A, ? super T> accumulator = this.collector.accumulator();
+
+        this.elements.forEachRemaining(element -> accumulator.accept(acc, element));
+
+        return acc;
+    }
+}
@@ -1,22 +1,49 @@
 package custom.streams;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 public interface Collector<T, A, R>
 {
     // T - type of input elements
     // A - type of mutable accumulator
     // R - type of result
 
+    enum Characteristics
+    {
+        // The accumulator may be called concurrently from several threads on the same container, so a parallel
+        // collection can share one container instead of merging one per split.
+        CONCURRENT,
+
+        // The result doesn't depend on encounter order.
+        UNORDERED,
+
+        // The finalizer is the identity function (A is R), so it can be skipped.
+        IDENTITY_FINISH
+    }
+
     Supplier<A> supplier();
     Consumer2<A, T> accumulator();
     Function2<A, A, A> combiner();
     Function1<A, R> finalizer();
 
+    default Set<Characteristics> characteristics()
+    {
+        return Collections.emptySet();
+    }
+
     public static <U, V, W> Collector<U, V, W> of(
             Supplier<V> supplier,
             Consumer2<V, U> accumulator,
             Function2<V, V, V> combiner,
-            Function1<V, W> finalizer)
+            Function1<V, W> finalizer,
+            Characteristics... characteristics)
     {
+        Set<Characteristics> characteristicsSet = characteristics.length == 0
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.of(characteristics[0], characteristics));
+
         return new Collector<U, V, W>() {
             @Override
             public Supplier<V> supplier() {
@@ -37,6 +64,11 @@ public interface Collector<T, A, R>
             public Function1<V, W> finalizer() {
                 return finalizer;
             }
+
+            @Override
+            public Set<Characteristics> characteristics() {
+                return characteristicsSet;
+            }
         };
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,59 @@
 package custom.streams;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class Collectors
 {
     private Collectors() {}
 
+    // Applies the collector's finalizer, unless it is declared to be the identity.
+    @SuppressWarnings("unchecked")
+    static <A, R> R finish(Collector<?, A, R> collector, A acc)
+    {
+        if (collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH))
+        {
+            return (R) acc;
+        }
+
+        return collector.finalizer().apply(acc);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, A, V> Map<K, V> castValues(Map<K, A> map)
+    {
+        return (Map<K, V>) map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, A, V> ConcurrentMap<K, V> castValues(ConcurrentMap<K, A> map)
+    {
+        return (ConcurrentMap<K, V>) map;
+    }
+
+    private static Collector.Characteristics[] withIdentityFinish(
+            Collector<?, ?, ?> downstream,
+            Collector.Characteristics... characteristics)
+    {
+        if (!downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH))
+        {
+            return characteristics;
+        }
+
+        Collector.Characteristics[] result = Arrays.copyOf(characteristics, characteristics.length + 1);
+        result[characteristics.length] = Collector.Characteristics.IDENTITY_FINISH;
+        return result;
+    }
+
     public static <T> Collector<T, ?, List<T>> toList()
     {
         return Collector.<T, List<T>, List<T>>of(
                 () -> new ArrayList<>(),
                 (lis, el) -> { lis.add(el); },
                 (lis1, lis2) -> { lis1.addAll(lis2); return lis1; },
-                (lis) -> lis
+                (lis) -> lis,
+                Collector.Characteristics.IDENTITY_FINISH
         );
     }
 
@@ -22,7 +63,9 @@ public abstract class Collectors
                 () -> new HashSet<>(),
                 (set, el) -> { set.add(el); },
                 (set1, set2) -> { set1.addAll(set2); return set1; },
-                (set) -> set
+                (set) -> set,
+                Collector.Characteristics.IDENTITY_FINISH,
+                Collector.Characteristics.UNORDERED
         );
     }
 
@@ -36,7 +79,8 @@ public abstract class Collectors
                 downstream.supplier(),
                 (acc, el) -> accumulator.accept(acc, mapper.apply(el)),
                 downstream.combiner(),
-                downstream.finalizer()
+                downstream.finalizer(),
+                downstream.characteristics().toArray(new Collector.Characteristics[0])
         );
     }
 
@@ -50,7 +94,8 @@ public abstract class Collectors
                 downstream.supplier(),
                 (acc, el) -> flatMapper.apply(el).forEach(subEl -> accumulator.accept(acc, subEl)),
                 downstream.combiner(),
-                downstream.finalizer()
+                downstream.finalizer(),
+                downstream.characteristics().toArray(new Collector.Characteristics[0])
         );
     }
 
@@ -91,6 +136,12 @@ public abstract class Collectors
                     return map1;
                 },
                 (map) -> {
+                    // If every per-key container already is its final value, the map itself is the result.
+                    if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH))
+                    {
+                        return castValues(map);
+                    }
+
                     Map<K, V> finalMap = new HashMap<>();
 
                     for (Map.Entry<K, A> entry : map.entrySet())
@@ -99,7 +150,162 @@ public abstract class Collectors
                     }
 
                     return finalMap;
-                }
+                },
+                withIdentityFinish(downstream)
+        );
+    }
+
+    // Safe for many threads to accumulate into one shared map: keys are added through a ConcurrentHashMap, and each
+    // per-key container is only accumulated into while holding that container's lock, so threads working on
+    // different keys never contend. Being CONCURRENT and UNORDERED, a parallel Stream2 shares one map across all
+    // splits, so the combiner never runs there.
+    public static <T, K, A, V> Collector<T, ?, ConcurrentMap<K, V>> groupingByConcurrent(
+            Function1<? super T, ? extends K> classifier,
+            Collector<? super T, A, V> downstream)
+    {
+        Supplier<A> supplier = downstream.supplier();
+        Consumer2<A, ? super T> accumulator = downstream.accumulator();
+        Function2<A, A, A> combiner = downstream.combiner();
+        Function1<A, V> finalizer = downstream.finalizer();
+
+        return Collector.of(
+                () -> new ConcurrentHashMap<K, A>(),
+                (map, el) -> {
+                    A container = map.computeIfAbsent(classifier.apply(el), key -> supplier.get());
+
+                    synchronized (container)
+                    {
+                        accumulator.accept(container, el);
+                    }
+                },
+                (map1, map2) -> {
+                    for (Map.Entry<K, A> entry : map2.entrySet())
+                    {
+                        map1.merge(entry.getKey(), entry.getValue(), combiner::apply);
+                    }
+
+                    return map1;
+                },
+                (map) -> {
+                    if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH))
+                    {
+                        return castValues(map);
+                    }
+
+                    ConcurrentMap<K, V> finalMap = new ConcurrentHashMap<>();
+
+                    for (Map.Entry<K, A> entry : map.entrySet())
+                    {
+                        finalMap.put(entry.getKey(), finalizer.apply(entry.getValue()));
+                    }
+
+                    return finalMap;
+                },
+                withIdentityFinish(
+                        downstream,
+                        Collector.Characteristics.CONCURRENT,
+                        Collector.Characteristics.UNORDERED)
+        );
+    }
+
+    // Like groupingBy, but for int keys: the per-key containers live in an open-addressing IntObjectHashMap, so
+    // keys are never boxed.
+    public static <T, A, V> Collector<T, ?, IntObjectHashMap<V>> groupingByInt(
+            ToIntFunction1<? super T> classifier,
+            Collector<? super T, A, V> downstream)
+    {
+        Supplier<A> supplier = downstream.supplier();
+        Consumer2<A, ? super T> accumulator = downstream.accumulator();
+        Function2<A, A, A> combiner = downstream.combiner();
+        Function1<A, V> finalizer = downstream.finalizer();
+
+        return Collector.of(
+                () -> new IntObjectHashMap<A>(),
+                (map, el) -> accumulator.accept(map.computeIfAbsent(classifier.apply(el), key -> supplier.get()), el),
+                (map1, map2) -> {
+                    map2.forEach((key, acc2) -> {
+                        A acc1 = map1.get(key);
+                        map1.put(key, acc1 == null && !map1.containsKey(key) ? acc2 : combiner.apply(acc1, acc2));
+                    });
+
+                    return map1;
+                },
+                (map) -> map.mapValues(finalizer),
+                withIdentityFinish(downstream)
+        );
+    }
+
+    // Like groupingBy, but for long keys, backed by an open-addressing LongObjectHashMap.
+    public static <T, A, V> Collector<T, ?, LongObjectHashMap<V>> groupingByLong(
+            ToLongFunction1<? super T> classifier,
+            Collector<? super T, A, V> downstream)
+    {
+        Supplier<A> supplier = downstream.supplier();
+        Consumer2<A, ? super T> accumulator = downstream.accumulator();
+        Function2<A, A, A> combiner = downstream.combiner();
+        Function1<A, V> finalizer = downstream.finalizer();
+
+        return Collector.of(
+                () -> new LongObjectHashMap<A>(),
+                (map, el) -> accumulator.accept(map.computeIfAbsent(classifier.apply(el), key -> supplier.get()), el),
+                (map1, map2) -> {
+                    map2.forEach((key, acc2) -> {
+                        A acc1 = map1.get(key);
+                        map1.put(key, acc1 == null && !map1.containsKey(key) ? acc2 : combiner.apply(acc1, acc2));
+                    });
+
+                    return map1;
+                },
+                (map) -> map.mapValues(finalizer),
+                withIdentityFinish(downstream)
+        );
+    }
+
+    public static <T> Collector<T, ?, IntLongHashMap> countingByInt(ToIntFunction1<? super T> classifier)
+    {
+        return countingByInt(classifier, false);
+    }
+
+    // Counts elements per int key in an IntLongHashMap, optionally with its tables off-heap.
+    public static <T> Collector<T, ?, IntLongHashMap> countingByInt(
+            ToIntFunction1<? super T> classifier,
+            boolean offHeap)
+    {
+        return Collector.<T, IntLongHashMap, IntLongHashMap>of(
+                () -> new IntLongHashMap(16, offHeap),
+                (map, el) -> { map.addTo(classifier.apply(el), 1); },
+                (map1, map2) -> { map1.addAll(map2); return map1; },
+                (map) -> map,
+                Collector.Characteristics.IDENTITY_FINISH,
+                Collector.Characteristics.UNORDERED
+        );
+    }
+
+    public static <T> Collector<T, ?, LongLongHashMap> countingByLong(ToLongFunction1<? super T> classifier)
+    {
+        return summingLongBy(classifier, el -> 1, false);
+    }
+
+    public static <T> Collector<T, ?, LongLongHashMap> summingLongBy(
+            ToLongFunction1<? super T> classifier,
+            ToLongFunction1<? super T> mapper)
+    {
+        return summingLongBy(classifier, mapper, false);
+    }
+
+    // Sums a long value per long key in a LongLongHashMap, optionally with its tables off-heap.
+    public static <T> Collector<T, ?, LongLongHashMap> summingLongBy(
+            ToLongFunction1<? super T> classifier,
+            ToLongFunction1<? super T> mapper,
+            boolean offHeap)
+    {
+        return Collector.<T, LongLongHashMap, LongLongHashMap>of(
+                () -> new LongLongHashMap(16, offHeap),
+                (map, el) -> { map.addTo(classifier.apply(el), mapper.apply(el)); },
+                (map1, map2) -> { map1.addAll(map2); return map1; },
+                (map) -> map,
+                Collector.Characteristics.IDENTITY_FINISH,
+                Collector.Characteristics.UNORDERED
         );
     }
 }
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface DoubleConsumer1 // DoubleConsumer
+{
+    void accept(double input);
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface DoubleFunction1<U> // DoubleFunction<U>
+{
+    U apply(double input1);
+}
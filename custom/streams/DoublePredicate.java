@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface DoublePredicate
+{
+    boolean test(double input);
+}
@@ -0,0 +1,22 @@
+package custom.streams;
+
+// Primitive counterpart of Spliterator; characteristics use the same bits as Spliterator.
+public interface DoubleSpliterator
+{
+    boolean tryAdvance(DoubleConsumer1 consumer);
+
+    default DoubleSpliterator trySplit()
+    {
+        return null;
+    }
+
+    default long estimateSize()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    default int characteristics()
+    {
+        return 0;
+    }
+}
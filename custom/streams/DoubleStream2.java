@@ -0,0 +1,457 @@
+package custom.streams;
+
+import java.util.Arrays;
+import java.util.OptionalDouble;
+
+// Unboxed counterpart of Stream2 for double elements. Elements flow through the pipeline as double values, so numeric
+// stages don't allocate a Double per element.
+public class DoubleStream2
+{
+    private static final DoubleSpliterator EMPTY_SPLITERATOR = consumer -> false;
+
+    public static DoubleSpliterator arraySpliterator(double[] elements, int fromIndex, int toIndex)
+    {
+        return new DoubleSpliterator() {
+            private int index = fromIndex;
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                if (this.index < toIndex)
+                {
+                    consumer.accept(elements[this.index++]);
+                    return true;
+                }
+
+                return false;
+            }
+
+            @Override
+            public DoubleSpliterator trySplit()
+            {
+                int lo = this.index;
+                int mid = (lo + toIndex) >>> 1;
+
+                if (lo >= mid)
+                {
+                    return null;
+                }
+
+                this.index = mid;
+                return arraySpliterator(elements, lo, mid);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return toIndex - this.index;
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+            }
+        };
+    }
+
+    private static DoubleSpliterator mapSpliterator(DoubleSpliterator elements, DoubleToDoubleFunction1 mapper)
+    {
+        return new DoubleSpliterator() {
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public DoubleSpliterator trySplit()
+            {
+                DoubleSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : mapSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
+    }
+
+    private static <U> Spliterator<U> mapToObjSpliterator(DoubleSpliterator elements, DoubleFunction1<? extends U> mapper)
+    {
+        return new Spliterator<U>() {
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public Spliterator<U> trySplit()
+            {
+                DoubleSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : mapToObjSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
+    }
+
+    private static DoubleSpliterator filterSpliterator(DoubleSpliterator elements, DoublePredicate predicate)
+    {
+        return new DoubleSpliterator() {
+            private boolean matched = false;
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                this.matched = false;
+
+                while (!this.matched && elements.tryAdvance(input -> {
+                    if (predicate.test(input))
+                    {
+                        this.matched = true;
+                        consumer.accept(input);
+                    }
+                }));
+
+                return this.matched;
+            }
+
+            @Override
+            public DoubleSpliterator trySplit()
+            {
+                DoubleSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : filterSpliterator(prefix, predicate);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+            }
+        };
+    }
+
+    private static DoubleSpliterator flatMapSpliterator(
+            DoubleSpliterator elements,
+            DoubleFunction1<? extends DoubleStream2> flatMapper)
+    {
+        return new DoubleSpliterator() {
+            private DoubleSpliterator currentSpliterator = EMPTY_SPLITERATOR;
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                // Loop (rather than recurse) past empty inner streams.
+                while (!this.currentSpliterator.tryAdvance(consumer))
+                {
+                    if (!elements.tryAdvance(input -> { this.currentSpliterator = flatMapper.apply(input).elements; }))
+                    {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            @Override
+            public DoubleSpliterator trySplit()
+            {
+                if (this.currentSpliterator != EMPTY_SPLITERATOR)
+                {
+                    return null;
+                }
+
+                DoubleSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : flatMapSpliterator(prefix, flatMapper);
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & Spliterator.ORDERED;
+            }
+        };
+    }
+
+    // BEGIN
+
+    final DoubleSpliterator elements;
+
+    private DoubleStream2(DoubleSpliterator elements)
+    {
+        this.elements = elements;
+    }
+
+    public static DoubleStream2 of(DoubleSpliterator elements)
+    {
+        return new DoubleStream2(elements);
+    }
+
+    public static DoubleStream2 of(double... elements)
+    {
+        return new DoubleStream2(arraySpliterator(elements, 0, elements.length));
+    }
+
+    public DoubleStream2 map(DoubleToDoubleFunction1 mapper)
+    {
+        return new DoubleStream2(mapSpliterator(this.elements, mapper));
+    }
+
+    public <U> Stream2<U> mapToObj(DoubleFunction1<? extends U> mapper)
+    {
+        return Stream2.of(mapToObjSpliterator(this.elements, mapper));
+    }
+
+    public Stream2<Double> boxed()
+    {
+        return this.mapToObj(input -> input);
+    }
+
+    public DoubleStream2 flatMap(DoubleFunction1<? extends DoubleStream2> flatMapper)
+    {
+        return new DoubleStream2(flatMapSpliterator(this.elements, flatMapper));
+    }
+
+    public DoubleStream2 filter(DoublePredicate predicate)
+    {
+        return new DoubleStream2(filterSpliterator(this.elements, predicate));
+    }
+
+    public boolean anyMatch(DoublePredicate predicate)
+    {
+        boolean[] matched = new boolean[]{false};
+
+        while (!matched[0] && this.elements.tryAdvance(input -> { matched[0] = predicate.test(input); }));
+
+        return matched[0];
+    }
+
+    public boolean allMatch(DoublePredicate predicate)
+    {
+        boolean[] matched = new boolean[]{true};
+
+        while (matched[0] && this.elements.tryAdvance(input -> { matched[0] = predicate.test(input); }));
+
+        return matched[0];
+    }
+
+    public OptionalDouble findFirst()
+    {
+        double[] first = new double[1];
+
+        if (this.elements.tryAdvance(input -> { first[0] = input; }))
+        {
+            return OptionalDouble.of(first[0]);
+        }
+
+        return OptionalDouble.empty();
+    }
+
+    public DoubleStream2 take(long count)
+    {
+        DoubleSpliterator newSpliterator = new DoubleSpliterator() {
+            private long takenSoFar = 0;
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                if (this.takenSoFar < count)
+                {
+                    ++this.takenSoFar;
+                    return elements.tryAdvance(consumer);
+                }
+
+                return false;
+            }
+        };
+
+        return new DoubleStream2(newSpliterator);
+    }
+
+    public DoubleStream2 takeWhile(DoublePredicate predicate)
+    {
+        DoubleSpliterator newSpliterator = new DoubleSpliterator() {
+            private boolean isTaking = true;
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                if (!this.isTaking)
+                {
+                    return false;
+                }
+
+                boolean didAdvance = elements.tryAdvance(input -> {
+                    this.isTaking = predicate.test(input);
+
+                    if (this.isTaking)
+                    {
+                        consumer.accept(input);
+                    }
+                });
+
+                this.isTaking &= didAdvance;
+                return this.isTaking;
+            }
+        };
+
+        return new DoubleStream2(newSpliterator);
+    }
+
+    public DoubleStream2 drop(long count)
+    {
+        DoubleSpliterator newSpliterator = new DoubleSpliterator() {
+            private long droppedSoFar = 0;
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                for (; this.droppedSoFar < count; ++this.droppedSoFar)
+                {
+                    elements.tryAdvance(input -> {});
+                }
+
+                return elements.tryAdvance(consumer);
+            }
+        };
+
+        return new DoubleStream2(newSpliterator);
+    }
+
+    public DoubleStream2 dropWhile(DoublePredicate predicate)
+    {
+        DoubleSpliterator newSpliterator = new DoubleSpliterator() {
+            private boolean isDropping = true;
+
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                while (this.isDropping)
+                {
+                    boolean didAdvance = elements.tryAdvance(input -> {
+                        this.isDropping = predicate.test(input);
+
+                        if (!this.isDropping)
+                        {
+                            consumer.accept(input);
+                        }
+                    });
+
+                    this.isDropping &= didAdvance;
+
+                    if (!this.isDropping)
+                    {
+                        return didAdvance;
+                    }
+                }
+
+                return elements.tryAdvance(consumer);
+            }
+        };
+
+        return new DoubleStream2(newSpliterator);
+    }
+
+    public <A> A collect(Supplier<A> supplier, ObjDoubleConsumer2<A> accumulator)
+    {
+        A acc = supplier.get();
+
+        while (this.elements.tryAdvance(element -> accumulator.accept(acc, element)));
+
+        return acc;
+    }
+
+    public double[] toArray()
+    {
+        long size = this.elements.estimateSize();
+        boolean isSized = (this.elements.characteristics() & Spliterator.SIZED) != 0 && size < Integer.MAX_VALUE - 8;
+        double[][] result = new double[][]{ new double[isSized ? (int) size : 16] };
+        int[] count = new int[]{0};
+
+        while (this.elements.tryAdvance(element -> {
+            if (count[0] == result[0].length)
+            {
+                result[0] = Arrays.copyOf(result[0], Math.max(16, result[0].length * 2));
+            }
+
+            result[0][count[0]++] = element;
+        }));
+
+        return count[0] == result[0].length ? result[0] : Arrays.copyOf(result[0], count[0]);
+    }
+
+    public double sum()
+    {
+        double[] sum = new double[]{0};
+
+        while (this.elements.tryAdvance(element -> { sum[0] += element; }));
+
+        return sum[0];
+    }
+
+    public long count()
+    {
+        long[] count = new long[]{0};
+
+        while (this.elements.tryAdvance(element -> { ++count[0]; }));
+
+        return count[0];
+    }
+
+    public OptionalDouble min()
+    {
+        boolean[] isPresent = new boolean[]{false};
+        double[] min = new double[1];
+
+        while (this.elements.tryAdvance(element -> {
+            min[0] = isPresent[0] ? Math.min(min[0], element) : element;
+            isPresent[0] = true;
+        }));
+
+        return isPresent[0] ? OptionalDouble.of(min[0]) : OptionalDouble.empty();
+    }
+
+    public OptionalDouble max()
+    {
+        boolean[] isPresent = new boolean[]{false};
+        double[] max = new double[1];
+
+        while (this.elements.tryAdvance(element -> {
+            max[0] = isPresent[0] ? Math.max(max[0], element) : element;
+            isPresent[0] = true;
+        }));
+
+        return isPresent[0] ? OptionalDouble.of(max[0]) : OptionalDouble.empty();
+    }
+
+    public void forEach(DoubleConsumer1 consumer)
+    {
+        while (this.elements.tryAdvance(consumer));
+    }
+}
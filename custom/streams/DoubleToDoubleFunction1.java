@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface DoubleToDoubleFunction1 // DoubleUnaryOperator
+{
+    double apply(double input1);
+}
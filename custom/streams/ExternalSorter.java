@@ -0,0 +1,208 @@
+package custom.streams;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+// A stable sort of more elements than fit in the heap budget: whenever the buffered elements outgrow it, they are
+// sorted and written out as a run, and the result is a lazy k-way merge of the runs and the last, in-memory one.
+// Equal elements are taken from the earlier run first, which keeps them in encounter order. More runs than
+// MAX_MERGE_WIDTH are first merged, oldest first, into longer runs, which bounds the number of open files (a run is
+// only open while it is being written or read).
+final class ExternalSorter<T> implements Spiller<T, T>
+{
+    private static final int MAX_MERGE_WIDTH = 64;
+
+    private final Comparator<? super T> comparator;
+    private final SpillOptions<T> options;
+
+    private final ArrayList<T> buffer = new ArrayList<>();
+    private long bufferedBytes = 0;
+    private final ArrayList<SpillFile<T>> runs = new ArrayList<>();
+    private long count = 0;
+
+    ExternalSorter(Comparator<? super T> comparator, SpillOptions<T> options)
+    {
+        this.comparator = comparator;
+        this.options = options;
+    }
+
+    @Override
+    public void add(T element)
+    {
+        this.buffer.add(element);
+        ++this.count;
+        this.bufferedBytes += this.options.sizeOf.apply(element);
+
+        if (this.bufferedBytes > this.options.budgetBytes)
+        {
+            this.spill();
+        }
+    }
+
+    private void spill()
+    {
+        this.buffer.sort(this.comparator);
+        SpillFile<T> run = new SpillFile<>(this.options);
+
+        for (T element : this.buffer)
+        {
+            run.write(element);
+        }
+
+        run.finish(); // Runs waiting to be merged hold no open files.
+        this.runs.add(run);
+        this.buffer.clear();
+        this.bufferedBytes = 0;
+    }
+
+    @Override
+    public Spliterator<T> result()
+    {
+        this.buffer.sort(this.comparator);
+
+        if (this.runs.isEmpty())
+        {
+            return new ListSpliterator<>(this.buffer);
+        }
+
+        // Leave room for the in-memory run.
+        while (this.runs.size() >= MAX_MERGE_WIDTH)
+        {
+            List<SpillFile<T>> oldest = this.runs.subList(0, MAX_MERGE_WIDTH);
+            List<Iterator<? extends T>> sources = new ArrayList<>(oldest.size());
+
+            for (SpillFile<T> run : oldest)
+            {
+                sources.add(run.read());
+            }
+
+            SpillFile<T> merged = new SpillFile<>(this.options);
+
+            for (MergeIterator<T> merge = new MergeIterator<>(sources, this.comparator); merge.hasNext(); )
+            {
+                merged.write(merge.next());
+            }
+
+            merged.finish();
+
+            oldest.clear();
+            this.runs.add(0, merged);
+        }
+
+        List<Iterator<? extends T>> sources = new ArrayList<>(this.runs.size() + 1);
+
+        for (SpillFile<T> run : this.runs)
+        {
+            sources.add(run.read());
+        }
+
+        sources.add(Stream.toIter(this.buffer));
+        MergeIterator<T> merge = new MergeIterator<>(sources, this.comparator);
+
+        return new Spliterator<T>() {
+            private long remaining = ExternalSorter.this.count;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super T> consumer)
+            {
+                if (!merge.hasNext())
+                {
+                    return false;
+                }
+
+                --this.remaining;
+                consumer.accept(merge.next());
+                return true;
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return this.remaining;
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.SIZED;
+            }
+        };
+    }
+
+    @Override
+    public void close()
+    {
+        for (SpillFile<T> run : this.runs)
+        {
+            run.delete();
+        }
+    }
+
+    // Merges sorted sources through a heap of their next elements, ordered by element and then by source index.
+    private static final class MergeIterator<T> implements Iterator<T>
+    {
+        private static final class Head<T>
+        {
+            final Iterator<? extends T> source;
+            final int sourceIndex;
+            T element;
+
+            Head(Iterator<? extends T> source, int sourceIndex)
+            {
+                this.source = source;
+                this.sourceIndex = sourceIndex;
+            }
+        }
+
+        private final PriorityQueue<Head<T>> heads;
+
+        MergeIterator(List<Iterator<? extends T>> sources, Comparator<? super T> comparator)
+        {
+            this.heads = new PriorityQueue<>(Math.max(1, sources.size()), (head1, head2) -> {
+                int comparison = comparator.compare(head1.element, head2.element);
+                return comparison != 0 ? comparison : Integer.compare(head1.sourceIndex, head2.sourceIndex);
+            });
+
+            for (int i = 0; i < sources.size(); ++i)
+            {
+                Head<T> head = new Head<>(sources.get(i), i);
+
+                if (head.source.hasNext())
+                {
+                    head.element = head.source.next();
+                    this.heads.add(head);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return !this.heads.isEmpty();
+        }
+
+        @Override
+        public T next()
+        {
+            Head<T> head = this.heads.poll();
+
+            if (head == null)
+            {
+                throw new NoSuchElementException();
+            }
+
+            T element = head.element;
+
+            if (head.source.hasNext())
+            {
+                head.element = head.source.next();
+                this.heads.add(head);
+            }
+
+            return element;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package custom.streams;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Parallel search for an element matching a predicate, behind the parallel short-circuiting terminals. Splits like
+// CollectTask, and each leaf stops as soon as its result can no longer matter:
+// - unordered (findAny, anyMatch, allMatch): the first match anywhere sets a flag shared by the whole tree;
+// - ordered (findFirst): a match cancels only the subtrees to its right, since a match to its left still wins.
+// Returns null when no (relevant) match was found, and otherwise a Match, which (unlike an Optional) can hold a null
+// element: anyMatch and allMatch only care whether there was one.
+@SuppressWarnings("serial")
+final class FindTask<T> extends RecursiveTask<FindTask.Match<T>>
+{
+    static final class Match<T>
+    {
+        final T element;
+
+        Match(T element)
+        {
+            this.element = element;
+        }
+    }
+
+    private final Spliterator<? extends T> elements;
+    private final Predicate<? super T> predicate;
+    private final boolean ordered;
+    private final long sizeThreshold;
+    private final FindTask<T> parent;
+    private final int depth;
+    private final AtomicBoolean foundAny;
+
+    private FindTask<T> leftChild = null;
+    private FindTask<T> rightChild = null;
+    private volatile boolean cancelled = false;
+
+    // Leaf traversal state.
+    private T match = null;
+    private boolean matched = false;
+
+    FindTask(Spliterator<? extends T> elements, Predicate<? super T> predicate, boolean ordered)
+    {
+        this(elements, predicate, ordered, CollectTask.sizeThreshold(elements.estimateSize()), null, new AtomicBoolean());
+    }
+
+    private FindTask(
+            Spliterator<? extends T> elements,
+            Predicate<? super T> predicate,
+            boolean ordered,
+            long sizeThreshold,
+            FindTask<T> parent,
+            AtomicBoolean foundAny)
+    {
+        this.elements = elements;
+        this.predicate = predicate;
+        this.ordered = ordered;
+        this.sizeThreshold = sizeThreshold;
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.foundAny = foundAny;
+    }
+
+    private boolean isSuperseded()
+    {
+        if (!this.ordered)
+        {
+            return this.foundAny.get();
+        }
+
+        for (FindTask<T> task = this; task != null; task = task.parent)
+        {
+            if (task.cancelled)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void onMatch()
+    {
+        if (!this.ordered)
+        {
+            this.foundAny.set(true);
+            return;
+        }
+
+        for (FindTask<T> task = this, parent = this.parent; parent != null; task = parent, parent = parent.parent)
+        {
+            if (parent.leftChild == task)
+            {
+                parent.rightChild.cancelled = true;
+            }
+        }
+    }
+
+    @Override
+    protected Match<T> compute()
+    {
+        if (this.isSuperseded())
+        {
+            this.elements.cancel();
+            return null;
+        }
+
+        Spliterator<? extends T> prefix;
+
+        if (CollectTask.shouldSplit(this.elements.estimateSize(), this.sizeThreshold, this.depth)
+                && (prefix = this.elements.trySplit()) != null)
+        {
+            this.leftChild = new FindTask<>(
+                    prefix, this.predicate, this.ordered, this.sizeThreshold, this, this.foundAny);
+            this.rightChild = new FindTask<>(
+                    this.elements, this.predicate, this.ordered, this.sizeThreshold, this, this.foundAny);
+
+            // Unlike CollectTask, this thread takes the left half itself: matches near the start are the likely ones
+            // (and for findFirst, the ones that count), so they get looked at first.
+            this.rightChild.fork();
+            Match<T> leftResult = this.leftChild.compute();
+            Match<T> rightResult = this.rightChild.join();
+
+            return leftResult != null ? leftResult : rightResult;
+        }
+
+        Consumer1<T> test = input -> {
+            if (this.predicate.test(input))
+            {
+                this.match = input;
+                this.matched = true;
+            }
+        };
+
+        boolean hasMore = true;
+
+        while (!this.matched && !this.isSuperseded() && (hasMore = this.elements.tryAdvance(test)));
+
+        if (hasMore)
+        {
+            this.elements.cancel(); // Stopped early: nothing more will be pulled from this split.
+        }
+
+        if (!this.matched)
+        {
+            return null;
+        }
+
+        this.onMatch();
+        return new Match<>(this.match);
+    }
+}
@@ -0,0 +1,51 @@
+package custom.streams;
+
+import java.util.Objects;
+
+// An element paired with its position in the stream, as produced by zipWithIndex. The index is a primitive long, so
+// only the pair itself is allocated; mapIndexed and forEachIndexed avoid even that.
+public final class Indexed<T>
+{
+    private final long index;
+    private final T value;
+
+    public Indexed(long index, T value)
+    {
+        this.index = index;
+        this.value = value;
+    }
+
+    public long index()
+    {
+        return this.index;
+    }
+
+    public T value()
+    {
+        return this.value;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (!(other instanceof Indexed))
+        {
+            return false;
+        }
+
+        Indexed<?> that = (Indexed<?>) other;
+        return this.index == that.index && Objects.equals(this.value, that.value);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(this.index) * 31 + Objects.hashCode(this.value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "(" + this.index + ", " + this.value + ")";
+    }
+}
@@ -0,0 +1,319 @@
+package custom.streams;
+
+import java.lang.management.ManagementFactory;
+
+// The sinks and spliterator behind Stream2.instrument. Nothing here is on the path of an uninstrumented pipeline.
+final class Instrumentation
+{
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private Instrumentation()
+    {
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter()
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+        {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+
+        if (!hotspotThreads.isThreadAllocatedMemorySupported())
+        {
+            return null;
+        }
+
+        if (!hotspotThreads.isThreadAllocatedMemoryEnabled())
+        {
+            try
+            {
+                hotspotThreads.setThreadAllocatedMemoryEnabled(true);
+            }
+            catch (UnsupportedOperationException | SecurityException e)
+            {
+                return null;
+            }
+        }
+
+        return hotspotThreads;
+    }
+
+    static boolean canMeasureAllocation()
+    {
+        return THREADS != null;
+    }
+
+    private static long allocatedBytes()
+    {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    // One push-mode evaluation of an instrumented stage. The entry sink wraps the stage's own sink and the exit sink
+    // wraps its downstream, so the stage's own cost is what the entry measured minus what the exit measured. Counts
+    // are kept in plain fields (an evaluation runs on one thread) and added to the totals in end().
+    static final class Probe
+    {
+        private final StageMetrics metrics;
+        private final StageEvent event = new StageEvent();
+
+        private long elementsIn = 0;
+        private long elementsOut = 0;
+        private long inclusiveNanos = 0;
+        private long inclusiveBytes = 0;
+        private long downstreamNanos = 0;
+        private long downstreamBytes = 0;
+
+        Probe(StageMetrics metrics)
+        {
+            this.metrics = metrics;
+        }
+
+        @SuppressWarnings("unchecked")
+        Sink<Object> entry(Sink<?> stageSink)
+        {
+            Sink<Object> stage = (Sink<Object>) stageSink;
+
+            return new Sink<Object>() {
+                @Override
+                public void begin(long size)
+                {
+                    Probe.this.event.begin();
+                    long startNanos = System.nanoTime();
+                    long startBytes = allocatedBytes();
+                    stage.begin(size);
+                    Probe.this.inclusiveNanos += System.nanoTime() - startNanos;
+                    Probe.this.inclusiveBytes += allocatedBytes() - startBytes;
+                }
+
+                @Override
+                public void accept(Object input)
+                {
+                    ++Probe.this.elementsIn;
+                    long startNanos = System.nanoTime();
+                    long startBytes = allocatedBytes();
+                    stage.accept(input);
+                    Probe.this.inclusiveNanos += System.nanoTime() - startNanos;
+                    Probe.this.inclusiveBytes += allocatedBytes() - startBytes;
+                }
+
+                @Override
+                public void end()
+                {
+                    long startNanos = System.nanoTime();
+                    long startBytes = allocatedBytes();
+                    stage.end();
+                    Probe.this.inclusiveNanos += System.nanoTime() - startNanos;
+                    Probe.this.inclusiveBytes += allocatedBytes() - startBytes;
+                    Probe.this.flush();
+                }
+
+                @Override
+                public boolean cancellationRequested()
+                {
+                    return stage.cancellationRequested();
+                }
+            };
+        }
+
+        <T> Sink<T> exit(Sink<? super T> downstream)
+        {
+            return new Sink<T>() {
+                @Override
+                public void begin(long size)
+                {
+                    long startNanos = System.nanoTime();
+                    long startBytes = allocatedBytes();
+                    downstream.begin(size);
+                    Probe.this.downstreamNanos += System.nanoTime() - startNanos;
+                    Probe.this.downstreamBytes += allocatedBytes() - startBytes;
+                }
+
+                @Override
+                public void accept(T input)
+                {
+                    ++Probe.this.elementsOut;
+                    long startNanos = System.nanoTime();
+                    long startBytes = allocatedBytes();
+                    downstream.accept(input);
+                    Probe.this.downstreamNanos += System.nanoTime() - startNanos;
+                    Probe.this.downstreamBytes += allocatedBytes() - startBytes;
+                }
+
+                @Override
+                public void end()
+                {
+                    long startNanos = System.nanoTime();
+                    long startBytes = allocatedBytes();
+                    downstream.end();
+                    Probe.this.downstreamNanos += System.nanoTime() - startNanos;
+                    Probe.this.downstreamBytes += allocatedBytes() - startBytes;
+                }
+
+                @Override
+                public boolean cancellationRequested()
+                {
+                    return downstream.cancellationRequested();
+                }
+            };
+        }
+
+        // For an instrumented source, which has no work of its own to time: only counts what it emits.
+        <T> Sink<T> counter(Sink<? super T> downstream)
+        {
+            return new Sink.Chained<T, T>(downstream) {
+                @Override
+                public void begin(long size)
+                {
+                    Probe.this.event.begin();
+                    this.downstream.begin(size);
+                }
+
+                @Override
+                public void accept(T input)
+                {
+                    ++Probe.this.elementsOut;
+                    this.downstream.accept(input);
+                }
+
+                @Override
+                public void end()
+                {
+                    this.downstream.end();
+                    Probe.this.elementsIn = Probe.this.elementsOut;
+                    Probe.this.flush();
+                }
+            };
+        }
+
+        private void flush()
+        {
+            record(
+                    this.metrics,
+                    this.event,
+                    this.elementsIn,
+                    this.elementsOut,
+                    this.inclusiveNanos - this.downstreamNanos,
+                    this.inclusiveBytes - this.downstreamBytes);
+        }
+    }
+
+    private static void record(
+            StageMetrics metrics,
+            StageEvent event,
+            long elementsIn,
+            long elementsOut,
+            long nanos,
+            long allocatedBytes)
+    {
+        metrics.elementsIn.add(elementsIn);
+        metrics.elementsOut.add(elementsOut);
+        metrics.nanos.add(nanos);
+        metrics.allocatedBytes.add(allocatedBytes);
+
+        if (event == null)
+        {
+            return;
+        }
+
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.stage = metrics.name();
+            event.elementsIn = elementsIn;
+            event.elementsOut = elementsOut;
+            event.stageNanos = nanos;
+            event.allocatedBytes = allocatedBytes;
+            event.commit();
+        }
+    }
+
+    // Pull mode (parallel evaluation): the stage's spliterator pulls from its upstream itself, so only elements out
+    // can be counted, and its time includes the upstream's minus the consumer's.
+    static <T> Spliterator<T> pullSpliterator(Spliterator<? extends T> elements, StageMetrics metrics)
+    {
+        return new Spliterator<T>() {
+            private Consumer1<? super T> downstream;
+            private long elementsOut;
+            private long downstreamNanos;
+            private long downstreamBytes;
+            private final Consumer1<T> countingConsumer = input -> {
+                ++this.elementsOut;
+                long startNanos = System.nanoTime();
+                long startBytes = allocatedBytes();
+                this.downstream.accept(input);
+                this.downstreamNanos += System.nanoTime() - startNanos;
+                this.downstreamBytes += allocatedBytes() - startBytes;
+            };
+
+            private boolean measure(Consumer1<? super T> consumer, boolean isBulk)
+            {
+                // One event per bulk traversal (a split), none per single-element advance.
+                StageEvent event = isBulk ? new StageEvent() : null;
+
+                if (event != null)
+                {
+                    event.begin();
+                }
+
+                this.downstream = consumer;
+                this.elementsOut = 0;
+                this.downstreamNanos = 0;
+                this.downstreamBytes = 0;
+
+                long startNanos = System.nanoTime();
+                long startBytes = allocatedBytes();
+                boolean didAdvance = true;
+
+                if (isBulk)
+                {
+                    elements.forEachRemaining(this.countingConsumer);
+                }
+                else
+                {
+                    didAdvance = elements.tryAdvance(this.countingConsumer);
+                }
+
+                long nanos = System.nanoTime() - startNanos - this.downstreamNanos;
+                long bytes = allocatedBytes() - startBytes - this.downstreamBytes;
+                record(metrics, event, 0, this.elementsOut, nanos, bytes);
+                return didAdvance;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super T> consumer)
+            {
+                return this.measure(consumer, false);
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super T> consumer)
+            {
+                this.measure(consumer, true);
+            }
+
+            @Override
+            public Spliterator<T> trySplit()
+            {
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : pullSpliterator(prefix, metrics);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics();
+            }
+        };
+    }
+}
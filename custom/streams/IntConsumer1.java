@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface IntConsumer1 // IntConsumer
+{
+    void accept(int input);
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface IntFunction1<U> // IntFunction<U>
+{
+    U apply(int input1);
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface IntLongConsumer2 // (int key, long value) -> void
+{
+    void accept(int input1, long input2);
+}
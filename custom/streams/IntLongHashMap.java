@@ -0,0 +1,251 @@
+package custom.streams;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+// Open-addressing (linear probing) hash map from int keys to long values, for counting and summing by numeric key
+// without boxing either side. The tables can optionally live off-heap (direct buffers), which keeps very large
+// rollups out of the GC's way; that memory is released when the map becomes unreachable. A zero key marks an empty
+// slot in the table, so the entry for key 0 is kept on the side.
+public class IntLongHashMap
+{
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    // A direct buffer holds at most Integer.MAX_VALUE bytes, which caps an off-heap table of 8-byte values lower.
+    private static final int MAX_OFF_HEAP_CAPACITY = 1 << 27;
+
+    private final boolean offHeap;
+    private IntBuffer keys;
+    private LongBuffer values;
+    private int capacity;
+    private int mask;
+    private int tableSize = 0; // Entries in the table, excluding the zero key.
+    private int resizeThreshold;
+
+    private boolean hasZeroKey = false;
+    private long zeroKeyValue = 0;
+
+    public IntLongHashMap()
+    {
+        this(DEFAULT_EXPECTED_SIZE, false);
+    }
+
+    public IntLongHashMap(int expectedSize, boolean offHeap)
+    {
+        this.offHeap = offHeap;
+        this.allocate(Math.min(IntObjectHashMap.capacityFor(expectedSize), this.maxCapacity()));
+    }
+
+    private int maxCapacity()
+    {
+        return this.offHeap ? MAX_OFF_HEAP_CAPACITY : MAX_CAPACITY;
+    }
+
+    private void allocate(int capacity)
+    {
+        if (this.offHeap)
+        {
+            // Direct buffers start zeroed, which is what an empty table needs. (MAX_OFF_HEAP_CAPACITY keeps these byte
+            // counts within an int.)
+            this.keys = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+            this.values = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        else
+        {
+            this.keys = IntBuffer.allocate(capacity);
+            this.values = LongBuffer.allocate(capacity);
+        }
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        // A table that can't grow any more fills up to its last empty slot, which keeps every probe finite.
+        this.resizeThreshold = capacity == this.maxCapacity() ? capacity - 1 : capacity / 4 * 3;
+    }
+
+    private static int hash(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Index of the key's slot, or of the empty slot where it would go.
+    private int slotOf(int key)
+    {
+        int slot = hash(key) & this.mask;
+        int slotKey;
+
+        while ((slotKey = this.keys.get(slot)) != 0 && slotKey != key)
+        {
+            slot = (slot + 1) & this.mask;
+        }
+
+        return slot;
+    }
+
+    public boolean isOffHeap()
+    {
+        return this.offHeap;
+    }
+
+    public int size()
+    {
+        return this.tableSize + (this.hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size() == 0;
+    }
+
+    public boolean containsKey(int key)
+    {
+        if (key == 0)
+        {
+            return this.hasZeroKey;
+        }
+
+        return this.keys.get(this.slotOf(key)) != 0;
+    }
+
+    public long get(int key)
+    {
+        return this.getOrDefault(key, 0);
+    }
+
+    public long getOrDefault(int key, long defaultValue)
+    {
+        if (key == 0)
+        {
+            return this.hasZeroKey ? this.zeroKeyValue : defaultValue;
+        }
+
+        int slot = this.slotOf(key);
+        return this.keys.get(slot) != 0 ? this.values.get(slot) : defaultValue;
+    }
+
+    public void put(int key, long value)
+    {
+        if (key == 0)
+        {
+            this.hasZeroKey = true;
+            this.zeroKeyValue = value;
+            return;
+        }
+
+        int slot = this.slotOf(key);
+        this.values.put(slot, value);
+
+        if (this.keys.get(slot) == 0)
+        {
+            this.keys.put(slot, key);
+            this.onInsert(slot);
+        }
+    }
+
+    // Adds delta to the key's value (starting from 0 if absent) and returns the new value.
+    public long addTo(int key, long delta)
+    {
+        if (key == 0)
+        {
+            this.hasZeroKey = true;
+            return this.zeroKeyValue += delta;
+        }
+
+        int slot = this.slotOf(key);
+
+        if (this.keys.get(slot) == 0)
+        {
+            this.keys.put(slot, key);
+            this.values.put(slot, delta);
+            this.onInsert(slot);
+            return delta;
+        }
+
+        long value = this.values.get(slot) + delta;
+        this.values.put(slot, value);
+        return value;
+    }
+
+    // Adds every entry of the other map into this one; the combiner for parallel counting and summing.
+    public void addAll(IntLongHashMap other)
+    {
+        other.forEach(this::addTo);
+    }
+
+    public void forEach(IntLongConsumer2 consumer)
+    {
+        if (this.hasZeroKey)
+        {
+            consumer.accept(0, this.zeroKeyValue);
+        }
+
+        for (int slot = 0; slot < this.capacity; ++slot)
+        {
+            int key = this.keys.get(slot);
+
+            if (key != 0)
+            {
+                consumer.accept(key, this.values.get(slot));
+            }
+        }
+    }
+
+    // Called after a new key was stored in the slot.
+    private void onInsert(int slot)
+    {
+        if (++this.tableSize > this.resizeThreshold)
+        {
+            if (this.capacity == this.maxCapacity())
+            {
+                // The slot was empty before this insert, so clearing it again restores the table exactly.
+                this.keys.put(slot, 0);
+                this.values.put(slot, 0);
+                --this.tableSize;
+                throw new IllegalStateException(
+                        (this.offHeap ? "Off-heap table" : "Table") + " of " + this.capacity + " slots is full");
+            }
+
+            this.rehash(this.capacity * 2);
+        }
+    }
+
+    private void rehash(int capacity)
+    {
+        IntBuffer oldKeys = this.keys;
+        LongBuffer oldValues = this.values;
+        int oldCapacity = this.capacity;
+
+        this.allocate(capacity);
+
+        for (int oldSlot = 0; oldSlot < oldCapacity; ++oldSlot)
+        {
+            int key = oldKeys.get(oldSlot);
+
+            if (key != 0)
+            {
+                int slot = this.slotOf(key);
+                this.keys.put(slot, key);
+                this.values.put(slot, oldValues.get(oldSlot));
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("{");
+
+        this.forEach((key, value) -> {
+            if (builder.length() > 1)
+            {
+                builder.append(", ");
+            }
+
+            builder.append(key).append('=').append(value);
+        });
+
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface IntObjConsumer2<V> // (int key, V value) -> void
+{
+    void accept(int input1, V input2);
+}
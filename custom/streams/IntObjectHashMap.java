@@ -0,0 +1,232 @@
+package custom.streams;
+
+import java.util.Arrays;
+
+// Open-addressing (linear probing) hash map from int keys to objects, so keys are never boxed and lookups don't chase
+// entry nodes. A zero key marks an empty slot in the table, so the entry for key 0 is kept on the side.
+public class IntObjectHashMap<V>
+{
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int tableSize = 0; // Entries in the table, excluding the zero key.
+    private int resizeThreshold;
+
+    private boolean hasZeroKey = false;
+    private V zeroKeyValue = null;
+
+    public IntObjectHashMap()
+    {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    public IntObjectHashMap(int expectedSize)
+    {
+        this.allocate(capacityFor(expectedSize));
+    }
+
+    static int capacityFor(int expectedSize)
+    {
+        // Keep the table at most 3/4 full.
+        long minCapacity = Math.max(2, (long) expectedSize * 4 / 3 + 1);
+        return (int) Math.min(1 << 30, Long.highestOneBit(minCapacity - 1) << 1);
+    }
+
+    private void allocate(int capacity)
+    {
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.resizeThreshold = capacity / 4 * 3;
+    }
+
+    private static int hash(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Index of the key's slot, or of the empty slot where it would go.
+    private int slotOf(int key)
+    {
+        int slot = hash(key) & this.mask;
+
+        while (this.keys[slot] != 0 && this.keys[slot] != key)
+        {
+            slot = (slot + 1) & this.mask;
+        }
+
+        return slot;
+    }
+
+    public int size()
+    {
+        return this.tableSize + (this.hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size() == 0;
+    }
+
+    public boolean containsKey(int key)
+    {
+        if (key == 0)
+        {
+            return this.hasZeroKey;
+        }
+
+        return this.keys[this.slotOf(key)] != 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key)
+    {
+        if (key == 0)
+        {
+            return this.zeroKeyValue;
+        }
+
+        return (V) this.values[this.slotOf(key)];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value)
+    {
+        if (key == 0)
+        {
+            V previous = this.zeroKeyValue;
+            this.hasZeroKey = true;
+            this.zeroKeyValue = value;
+            return previous;
+        }
+
+        int slot = this.slotOf(key);
+        V previous = (V) this.values[slot];
+        this.values[slot] = value;
+
+        if (this.keys[slot] == 0)
+        {
+            this.keys[slot] = key;
+            this.onInsert();
+        }
+
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key, IntFunction1<? extends V> mappingFunction)
+    {
+        if (key == 0)
+        {
+            if (!this.hasZeroKey)
+            {
+                this.hasZeroKey = true;
+                this.zeroKeyValue = mappingFunction.apply(key);
+            }
+
+            return this.zeroKeyValue;
+        }
+
+        int slot = this.slotOf(key);
+
+        if (this.keys[slot] != 0)
+        {
+            return (V) this.values[slot];
+        }
+
+        V value = mappingFunction.apply(key);
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.onInsert();
+
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(IntObjConsumer2<? super V> consumer)
+    {
+        if (this.hasZeroKey)
+        {
+            consumer.accept(0, this.zeroKeyValue);
+        }
+
+        for (int slot = 0; slot < this.keys.length; ++slot)
+        {
+            if (this.keys[slot] != 0)
+            {
+                consumer.accept(this.keys[slot], (V) this.values[slot]);
+            }
+        }
+    }
+
+    // A map with the same keys and every value passed through the mapper, allocated at this map's capacity.
+    @SuppressWarnings("unchecked")
+    public <W> IntObjectHashMap<W> mapValues(Function1<? super V, ? extends W> mapper)
+    {
+        IntObjectHashMap<W> result = new IntObjectHashMap<>(0);
+
+        result.keys = Arrays.copyOf(this.keys, this.keys.length);
+        result.values = new Object[this.values.length];
+        result.mask = this.mask;
+        result.tableSize = this.tableSize;
+        result.resizeThreshold = this.resizeThreshold;
+        result.hasZeroKey = this.hasZeroKey;
+        result.zeroKeyValue = this.hasZeroKey ? mapper.apply(this.zeroKeyValue) : null;
+
+        for (int slot = 0; slot < this.keys.length; ++slot)
+        {
+            if (this.keys[slot] != 0)
+            {
+                result.values[slot] = mapper.apply((V) this.values[slot]);
+            }
+        }
+
+        return result;
+    }
+
+    private void onInsert()
+    {
+        if (++this.tableSize > this.resizeThreshold)
+        {
+            this.rehash(this.keys.length * 2);
+        }
+    }
+
+    private void rehash(int capacity)
+    {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+
+        this.allocate(capacity);
+
+        for (int oldSlot = 0; oldSlot < oldKeys.length; ++oldSlot)
+        {
+            if (oldKeys[oldSlot] != 0)
+            {
+                int slot = this.slotOf(oldKeys[oldSlot]);
+                this.keys[slot] = oldKeys[oldSlot];
+                this.values[slot] = oldValues[oldSlot];
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("{");
+
+        this.forEach((key, value) -> {
+            if (builder.length() > 1)
+            {
+                builder.append(", ");
+            }
+
+            builder.append(key).append('=').append(value);
+        });
+
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface IntPredicate
+{
+    boolean test(int input);
+}
@@ -0,0 +1,509 @@
+package custom.streams;
+
+import java.util.Arrays;
+import java.util.OptionalInt;
+
+// Unboxed counterpart of Stream2 for int elements. Elements flow through the pipeline as int values, so numeric
+// stages don't allocate a Integer per element.
+public class IntStream2
+{
+    private static final IntSpliterator EMPTY_SPLITERATOR = consumer -> false;
+
+    public static IntSpliterator arraySpliterator(int[] elements, int fromIndex, int toIndex)
+    {
+        return new IntSpliterator() {
+            private int index = fromIndex;
+
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                if (this.index < toIndex)
+                {
+                    consumer.accept(elements[this.index++]);
+                    return true;
+                }
+
+                return false;
+            }
+
+            @Override
+            public IntSpliterator trySplit()
+            {
+                int lo = this.index;
+                int mid = (lo + toIndex) >>> 1;
+
+                if (lo >= mid)
+                {
+                    return null;
+                }
+
+                this.index = mid;
+                return arraySpliterator(elements, lo, mid);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return toIndex - this.index;
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+            }
+        };
+    }
+
+    public static IntSpliterator rangeSpliterator(int fromInclusive, int toExclusive)
+    {
+        return new IntSpliterator() {
+            private int next = fromInclusive;
+
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                if (this.next < toExclusive)
+                {
+                    consumer.accept(this.next++);
+                    return true;
+                }
+
+                return false;
+            }
+
+            @Override
+            public IntSpliterator trySplit()
+            {
+                int lo = this.next;
+                int mid = lo + ((toExclusive - lo) >>> 1);
+
+                if (lo >= mid)
+                {
+                    return null;
+                }
+
+                this.next = mid;
+                return rangeSpliterator(lo, mid);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return Math.max(0, (long) toExclusive - this.next);
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE
+                        | Spliterator.DISTINCT | Spliterator.SORTED;
+            }
+        };
+    }
+
+    private static IntSpliterator mapSpliterator(IntSpliterator elements, IntToIntFunction1 mapper)
+    {
+        return new IntSpliterator() {
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public IntSpliterator trySplit()
+            {
+                IntSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : mapSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
+    }
+
+    private static <U> Spliterator<U> mapToObjSpliterator(IntSpliterator elements, IntFunction1<? extends U> mapper)
+    {
+        return new Spliterator<U>() {
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public Spliterator<U> trySplit()
+            {
+                IntSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : mapToObjSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
+    }
+
+    private static IntSpliterator filterSpliterator(IntSpliterator elements, IntPredicate predicate)
+    {
+        return new IntSpliterator() {
+            private boolean matched = false;
+
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                this.matched = false;
+
+                while (!this.matched && elements.tryAdvance(input -> {
+                    if (predicate.test(input))
+                    {
+                        this.matched = true;
+                        consumer.accept(input);
+                    }
+                }));
+
+                return this.matched;
+            }
+
+            @Override
+            public IntSpliterator trySplit()
+            {
+                IntSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : filterSpliterator(prefix, predicate);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+            }
+        };
+    }
+
+    private static IntSpliterator flatMapSpliterator(
+            IntSpliterator elements,
+            IntFunction1<? extends IntStream2> flatMapper)
+    {
+        return new IntSpliterator() {
+            private IntSpliterator currentSpliterator = EMPTY_SPLITERATOR;
+
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                // Loop (rather than recurse) past empty inner streams.
+                while (!this.currentSpliterator.tryAdvance(consumer))
+                {
+                    if (!elements.tryAdvance(input -> { this.currentSpliterator = flatMapper.apply(input).elements; }))
+                    {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            @Override
+            public IntSpliterator trySplit()
+            {
+                if (this.currentSpliterator != EMPTY_SPLITERATOR)
+                {
+                    return null;
+                }
+
+                IntSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : flatMapSpliterator(prefix, flatMapper);
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & Spliterator.ORDERED;
+            }
+        };
+    }
+
+    // BEGIN
+
+    final IntSpliterator elements;
+
+    private IntStream2(IntSpliterator elements)
+    {
+        this.elements = elements;
+    }
+
+    public static IntStream2 of(IntSpliterator elements)
+    {
+        return new IntStream2(elements);
+    }
+
+    public static IntStream2 of(int... elements)
+    {
+        return new IntStream2(arraySpliterator(elements, 0, elements.length));
+    }
+
+    public static IntStream2 range(int startInclusive, int endExclusive)
+    {
+        return new IntStream2(rangeSpliterator(startInclusive, endExclusive));
+    }
+
+    public IntStream2 map(IntToIntFunction1 mapper)
+    {
+        return new IntStream2(mapSpliterator(this.elements, mapper));
+    }
+
+    public <U> Stream2<U> mapToObj(IntFunction1<? extends U> mapper)
+    {
+        return Stream2.of(mapToObjSpliterator(this.elements, mapper));
+    }
+
+    public Stream2<Integer> boxed()
+    {
+        return this.mapToObj(input -> input);
+    }
+
+    public IntStream2 flatMap(IntFunction1<? extends IntStream2> flatMapper)
+    {
+        return new IntStream2(flatMapSpliterator(this.elements, flatMapper));
+    }
+
+    public IntStream2 filter(IntPredicate predicate)
+    {
+        return new IntStream2(filterSpliterator(this.elements, predicate));
+    }
+
+    public boolean anyMatch(IntPredicate predicate)
+    {
+        boolean[] matched = new boolean[]{false};
+
+        while (!matched[0] && this.elements.tryAdvance(input -> { matched[0] = predicate.test(input); }));
+
+        return matched[0];
+    }
+
+    public boolean allMatch(IntPredicate predicate)
+    {
+        boolean[] matched = new boolean[]{true};
+
+        while (matched[0] && this.elements.tryAdvance(input -> { matched[0] = predicate.test(input); }));
+
+        return matched[0];
+    }
+
+    public OptionalInt findFirst()
+    {
+        int[] first = new int[1];
+
+        if (this.elements.tryAdvance(input -> { first[0] = input; }))
+        {
+            return OptionalInt.of(first[0]);
+        }
+
+        return OptionalInt.empty();
+    }
+
+    public IntStream2 take(long count)
+    {
+        IntSpliterator newSpliterator = new IntSpliterator() {
+            private long takenSoFar = 0;
+
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                if (this.takenSoFar < count)
+                {
+                    ++this.takenSoFar;
+                    return elements.tryAdvance(consumer);
+                }
+
+                return false;
+            }
+        };
+
+        return new IntStream2(newSpliterator);
+    }
+
+    public IntStream2 takeWhile(IntPredicate predicate)
+    {
+        IntSpliterator newSpliterator = new IntSpliterator() {
+            private boolean isTaking = true;
+
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                if (!this.isTaking)
+                {
+                    return false;
+                }
+
+                boolean didAdvance = elements.tryAdvance(input -> {
+                    this.isTaking = predicate.test(input);
+
+                    if (this.isTaking)
+                    {
+                        consumer.accept(input);
+                    }
+                });
+
+                this.isTaking &= didAdvance;
+                return this.isTaking;
+            }
+        };
+
+        return new IntStream2(newSpliterator);
+    }
+
+    public IntStream2 drop(long count)
+    {
+        IntSpliterator newSpliterator = new IntSpliterator() {
+            private long droppedSoFar = 0;
+
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                for (; this.droppedSoFar < count; ++this.droppedSoFar)
+                {
+                    elements.tryAdvance(input -> {});
+                }
+
+                return elements.tryAdvance(consumer);
+            }
+        };
+
+        return new IntStream2(newSpliterator);
+    }
+
+    public IntStream2 dropWhile(IntPredicate predicate)
+    {
+        IntSpliterator newSpliterator = new IntSpliterator() {
+            private boolean isDropping = true;
+
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                while (this.isDropping)
+                {
+                    boolean didAdvance = elements.tryAdvance(input -> {
+                        this.isDropping = predicate.test(input);
+
+                        if (!this.isDropping)
+                        {
+                            consumer.accept(input);
+                        }
+                    });
+
+                    this.isDropping &= didAdvance;
+
+                    if (!this.isDropping)
+                    {
+                        return didAdvance;
+                    }
+                }
+
+                return elements.tryAdvance(consumer);
+            }
+        };
+
+        return new IntStream2(newSpliterator);
+    }
+
+    public <A> A collect(Supplier<A> supplier, ObjIntConsumer2<A> accumulator)
+    {
+        A acc = supplier.get();
+
+        while (this.elements.tryAdvance(element -> accumulator.accept(acc, element)));
+
+        return acc;
+    }
+
+    public int[] toArray()
+    {
+        long size = this.elements.estimateSize();
+        boolean isSized = (this.elements.characteristics() & Spliterator.SIZED) != 0 && size < Integer.MAX_VALUE - 8;
+        int[][] result = new int[][]{ new int[isSized ? (int) size : 16] };
+        int[] count = new int[]{0};
+
+        while (this.elements.tryAdvance(element -> {
+            if (count[0] == result[0].length)
+            {
+                result[0] = Arrays.copyOf(result[0], Math.max(16, result[0].length * 2));
+            }
+
+            result[0][count[0]++] = element;
+        }));
+
+        return count[0] == result[0].length ? result[0] : Arrays.copyOf(result[0], count[0]);
+    }
+
+    public int sum()
+    {
+        int[] sum = new int[]{0};
+
+        while (this.elements.tryAdvance(element -> { sum[0] += element; }));
+
+        return sum[0];
+    }
+
+    public long count()
+    {
+        long[] count = new long[]{0};
+
+        while (this.elements.tryAdvance(element -> { ++count[0]; }));
+
+        return count[0];
+    }
+
+    public OptionalInt min()
+    {
+        boolean[] isPresent = new boolean[]{false};
+        int[] min = new int[1];
+
+        while (this.elements.tryAdvance(element -> {
+            min[0] = isPresent[0] ? Math.min(min[0], element) : element;
+            isPresent[0] = true;
+        }));
+
+        return isPresent[0] ? OptionalInt.of(min[0]) : OptionalInt.empty();
+    }
+
+    public OptionalInt max()
+    {
+        boolean[] isPresent = new boolean[]{false};
+        int[] max = new int[1];
+
+        while (this.elements.tryAdvance(element -> {
+            max[0] = isPresent[0] ? Math.max(max[0], element) : element;
+            isPresent[0] = true;
+        }));
+
+        return isPresent[0] ? OptionalInt.of(max[0]) : OptionalInt.empty();
+    }
+
+    public void forEach(IntConsumer1 consumer)
+    {
+        while (this.elements.tryAdvance(consumer));
+    }
+}
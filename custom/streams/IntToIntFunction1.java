@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface IntToIntFunction1 // IntUnaryOperator
+{
+    int apply(int input1);
+}
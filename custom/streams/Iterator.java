@@ -5,4 +5,19 @@ public interface Iterator<T>
     boolean hasNext();
 
     T next();
+
+    // Moves up to 'max' (> 0) next elements into batch[0, max) and returns how many it moved: 0 only once the
+    // iterator is exhausted, but possibly fewer than 'max' before that. The Stream stages override this to pass
+    // elements along in chunks, with one virtual call per chunk instead of a hasNext()/next() pair per element.
+    default int nextBatch(Object[] batch, int max)
+    {
+        int count = 0;
+
+        while (count < max && this.hasNext())
+        {
+            batch[count++] = this.next();
+        }
+
+        return count;
+    }
 }
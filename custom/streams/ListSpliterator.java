@@ -0,0 +1,85 @@
+package custom.streams;
+
+import java.util.List;
+
+// Index-based spliterator over a RandomAccess list: exact size, cheap splits, and O(1) slicing for take/drop.
+final class ListSpliterator<T> implements SliceableSpliterator<T>
+{
+    private final List<? extends T> elements;
+    private int index;
+    private final int fence;
+
+    ListSpliterator(List<? extends T> elements)
+    {
+        this(elements, 0, elements.size());
+    }
+
+    private ListSpliterator(List<? extends T> elements, int index, int fence)
+    {
+        this.elements = elements;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public ListSpliterator<T> slice(long skip, long limit)
+    {
+        int from = this.index + (int) Math.min(Math.max(skip, 0), this.fence - this.index);
+        int to = from + (int) Math.min(Math.max(limit, 0), this.fence - from);
+
+        return new ListSpliterator<>(this.elements, from, to);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer1<? super T> consumer)
+    {
+        if (this.index < this.fence)
+        {
+            consumer.accept(this.elements.get(this.index++));
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer1<? super T> consumer)
+    {
+        List<? extends T> elements = this.elements;
+        int fence = this.fence;
+
+        for (int i = this.index; i < fence; ++i)
+        {
+            consumer.accept(elements.get(i));
+        }
+
+        this.index = fence;
+    }
+
+    @Override
+    public Spliterator<T> trySplit()
+    {
+        int lo = this.index;
+        int mid = (lo + this.fence) >>> 1;
+
+        if (lo >= mid)
+        {
+            return null;
+        }
+
+        this.index = mid;
+        return new ListSpliterator<>(this.elements, lo, mid);
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        return this.fence - this.index;
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface LongConsumer1 // LongConsumer
+{
+    void accept(long input);
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface LongFunction1<U> // LongFunction<U>
+{
+    U apply(long input1);
+}
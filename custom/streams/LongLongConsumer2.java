@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface LongLongConsumer2 // (long key, long value) -> void
+{
+    void accept(long input1, long input2);
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface LongObjConsumer2<V> // (long key, V value) -> void
+{
+    void accept(long input1, V input2);
+}
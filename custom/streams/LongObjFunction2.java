@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface LongObjFunction2<T, R> // (long index, T element) -> R
+{
+    R apply(long input1, T input2);
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface LongPredicate
+{
+    boolean test(long input);
+}
@@ -0,0 +1,510 @@
+package custom.streams;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+// Unboxed counterpart of Stream2 for long elements. Elements flow through the pipeline as long values, so numeric
+// stages don't allocate a Long per element.
+public class LongStream2
+{
+    private static final LongSpliterator EMPTY_SPLITERATOR = consumer -> false;
+
+    public static LongSpliterator arraySpliterator(long[] elements, int fromIndex, int toIndex)
+    {
+        return new LongSpliterator() {
+            private int index = fromIndex;
+
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                if (this.index < toIndex)
+                {
+                    consumer.accept(elements[this.index++]);
+                    return true;
+                }
+
+                return false;
+            }
+
+            @Override
+            public LongSpliterator trySplit()
+            {
+                int lo = this.index;
+                int mid = (lo + toIndex) >>> 1;
+
+                if (lo >= mid)
+                {
+                    return null;
+                }
+
+                this.index = mid;
+                return arraySpliterator(elements, lo, mid);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return toIndex - this.index;
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+            }
+        };
+    }
+
+    public static LongSpliterator rangeSpliterator(long fromInclusive, long toExclusive)
+    {
+        return new LongSpliterator() {
+            private long next = fromInclusive;
+
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                if (this.next < toExclusive)
+                {
+                    consumer.accept(this.next++);
+                    return true;
+                }
+
+                return false;
+            }
+
+            @Override
+            public LongSpliterator trySplit()
+            {
+                long lo = this.next;
+                long mid = lo + ((toExclusive - lo) >>> 1);
+
+                if (lo >= mid)
+                {
+                    return null;
+                }
+
+                this.next = mid;
+                return rangeSpliterator(lo, mid);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                long size = toExclusive - this.next;
+                return this.next >= toExclusive ? 0 : size < 0 ? Long.MAX_VALUE : size;
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE
+                        | Spliterator.DISTINCT | Spliterator.SORTED;
+            }
+        };
+    }
+
+    private static LongSpliterator mapSpliterator(LongSpliterator elements, LongToLongFunction1 mapper)
+    {
+        return new LongSpliterator() {
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public LongSpliterator trySplit()
+            {
+                LongSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : mapSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
+    }
+
+    private static <U> Spliterator<U> mapToObjSpliterator(LongSpliterator elements, LongFunction1<? extends U> mapper)
+    {
+        return new Spliterator<U>() {
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public Spliterator<U> trySplit()
+            {
+                LongSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : mapToObjSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
+    }
+
+    private static LongSpliterator filterSpliterator(LongSpliterator elements, LongPredicate predicate)
+    {
+        return new LongSpliterator() {
+            private boolean matched = false;
+
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                this.matched = false;
+
+                while (!this.matched && elements.tryAdvance(input -> {
+                    if (predicate.test(input))
+                    {
+                        this.matched = true;
+                        consumer.accept(input);
+                    }
+                }));
+
+                return this.matched;
+            }
+
+            @Override
+            public LongSpliterator trySplit()
+            {
+                LongSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : filterSpliterator(prefix, predicate);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+            }
+        };
+    }
+
+    private static LongSpliterator flatMapSpliterator(
+            LongSpliterator elements,
+            LongFunction1<? extends LongStream2> flatMapper)
+    {
+        return new LongSpliterator() {
+            private LongSpliterator currentSpliterator = EMPTY_SPLITERATOR;
+
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                // Loop (rather than recurse) past empty inner streams.
+                while (!this.currentSpliterator.tryAdvance(consumer))
+                {
+                    if (!elements.tryAdvance(input -> { this.currentSpliterator = flatMapper.apply(input).elements; }))
+                    {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            @Override
+            public LongSpliterator trySplit()
+            {
+                if (this.currentSpliterator != EMPTY_SPLITERATOR)
+                {
+                    return null;
+                }
+
+                LongSpliterator prefix = elements.trySplit();
+                return prefix == null ? null : flatMapSpliterator(prefix, flatMapper);
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & Spliterator.ORDERED;
+            }
+        };
+    }
+
+    // BEGIN
+
+    final LongSpliterator elements;
+
+    private LongStream2(LongSpliterator elements)
+    {
+        this.elements = elements;
+    }
+
+    public static LongStream2 of(LongSpliterator elements)
+    {
+        return new LongStream2(elements);
+    }
+
+    public static LongStream2 of(long... elements)
+    {
+        return new LongStream2(arraySpliterator(elements, 0, elements.length));
+    }
+
+    public static LongStream2 range(long startInclusive, long endExclusive)
+    {
+        return new LongStream2(rangeSpliterator(startInclusive, endExclusive));
+    }
+
+    public LongStream2 map(LongToLongFunction1 mapper)
+    {
+        return new LongStream2(mapSpliterator(this.elements, mapper));
+    }
+
+    public <U> Stream2<U> mapToObj(LongFunction1<? extends U> mapper)
+    {
+        return Stream2.of(mapToObjSpliterator(this.elements, mapper));
+    }
+
+    public Stream2<Long> boxed()
+    {
+        return this.mapToObj(input -> input);
+    }
+
+    public LongStream2 flatMap(LongFunction1<? extends LongStream2> flatMapper)
+    {
+        return new LongStream2(flatMapSpliterator(this.elements, flatMapper));
+    }
+
+    public LongStream2 filter(LongPredicate predicate)
+    {
+        return new LongStream2(filterSpliterator(this.elements, predicate));
+    }
+
+    public boolean anyMatch(LongPredicate predicate)
+    {
+        boolean[] matched = new boolean[]{false};
+
+        while (!matched[0] && this.elements.tryAdvance(input -> { matched[0] = predicate.test(input); }));
+
+        return matched[0];
+    }
+
+    public boolean allMatch(LongPredicate predicate)
+    {
+        boolean[] matched = new boolean[]{true};
+
+        while (matched[0] && this.elements.tryAdvance(input -> { matched[0] = predicate.test(input); }));
+
+        return matched[0];
+    }
+
+    public OptionalLong findFirst()
+    {
+        long[] first = new long[1];
+
+        if (this.elements.tryAdvance(input -> { first[0] = input; }))
+        {
+            return OptionalLong.of(first[0]);
+        }
+
+        return OptionalLong.empty();
+    }
+
+    public LongStream2 take(long count)
+    {
+        LongSpliterator newSpliterator = new LongSpliterator() {
+            private long takenSoFar = 0;
+
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                if (this.takenSoFar < count)
+                {
+                    ++this.takenSoFar;
+                    return elements.tryAdvance(consumer);
+                }
+
+                return false;
+            }
+        };
+
+        return new LongStream2(newSpliterator);
+    }
+
+    public LongStream2 takeWhile(LongPredicate predicate)
+    {
+        LongSpliterator newSpliterator = new LongSpliterator() {
+            private boolean isTaking = true;
+
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                if (!this.isTaking)
+                {
+                    return false;
+                }
+
+                boolean didAdvance = elements.tryAdvance(input -> {
+                    this.isTaking = predicate.test(input);
+
+                    if (this.isTaking)
+                    {
+                        consumer.accept(input);
+                    }
+                });
+
+                this.isTaking &= didAdvance;
+                return this.isTaking;
+            }
+        };
+
+        return new LongStream2(newSpliterator);
+    }
+
+    public LongStream2 drop(long count)
+    {
+        LongSpliterator newSpliterator = new LongSpliterator() {
+            private long droppedSoFar = 0;
+
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                for (; this.droppedSoFar < count; ++this.droppedSoFar)
+                {
+                    elements.tryAdvance(input -> {});
+                }
+
+                return elements.tryAdvance(consumer);
+            }
+        };
+
+        return new LongStream2(newSpliterator);
+    }
+
+    public LongStream2 dropWhile(LongPredicate predicate)
+    {
+        LongSpliterator newSpliterator = new LongSpliterator() {
+            private boolean isDropping = true;
+
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                while (this.isDropping)
+                {
+                    boolean didAdvance = elements.tryAdvance(input -> {
+                        this.isDropping = predicate.test(input);
+
+                        if (!this.isDropping)
+                        {
+                            consumer.accept(input);
+                        }
+                    });
+
+                    this.isDropping &= didAdvance;
+
+                    if (!this.isDropping)
+                    {
+                        return didAdvance;
+                    }
+                }
+
+                return elements.tryAdvance(consumer);
+            }
+        };
+
+        return new LongStream2(newSpliterator);
+    }
+
+    public <A> A collect(Supplier<A> supplier, ObjLongConsumer2<A> accumulator)
+    {
+        A acc = supplier.get();
+
+        while (this.elements.tryAdvance(element -> accumulator.accept(acc, element)));
+
+        return acc;
+    }
+
+    public long[] toArray()
+    {
+        long size = this.elements.estimateSize();
+        boolean isSized = (this.elements.characteristics() & Spliterator.SIZED) != 0 && size < Integer.MAX_VALUE - 8;
+        long[][] result = new long[][]{ new long[isSized ? (int) size : 16] };
+        int[] count = new int[]{0};
+
+        while (this.elements.tryAdvance(element -> {
+            if (count[0] == result[0].length)
+            {
+                result[0] = Arrays.copyOf(result[0], Math.max(16, result[0].length * 2));
+            }
+
+            result[0][count[0]++] = element;
+        }));
+
+        return count[0] == result[0].length ? result[0] : Arrays.copyOf(result[0], count[0]);
+    }
+
+    public long sum()
+    {
+        long[] sum = new long[]{0};
+
+        while (this.elements.tryAdvance(element -> { sum[0] += element; }));
+
+        return sum[0];
+    }
+
+    public long count()
+    {
+        long[] count = new long[]{0};
+
+        while (this.elements.tryAdvance(element -> { ++count[0]; }));
+
+        return count[0];
+    }
+
+    public OptionalLong min()
+    {
+        boolean[] isPresent = new boolean[]{false};
+        long[] min = new long[1];
+
+        while (this.elements.tryAdvance(element -> {
+            min[0] = isPresent[0] ? Math.min(min[0], element) : element;
+            isPresent[0] = true;
+        }));
+
+        return isPresent[0] ? OptionalLong.of(min[0]) : OptionalLong.empty();
+    }
+
+    public OptionalLong max()
+    {
+        boolean[] isPresent = new boolean[]{false};
+        long[] max = new long[1];
+
+        while (this.elements.tryAdvance(element -> {
+            max[0] = isPresent[0] ? Math.max(max[0], element) : element;
+            isPresent[0] = true;
+        }));
+
+        return isPresent[0] ? OptionalLong.of(max[0]) : OptionalLong.empty();
+    }
+
+    public void forEach(LongConsumer1 consumer)
+    {
+        while (this.elements.tryAdvance(consumer));
+    }
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface LongToLongFunction1 // LongUnaryOperator
+{
+    long apply(long input1);
+}
@@ -0,0 +1,242 @@
+package custom.streams;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Spliterator over the records of a memory-mapped file, either delimited by a byte (e.g. '\n') or of a fixed size.
+// Each record is handed out as a read-only ByteBuffer slice of the mapping, so no bytes are copied. The file is
+// mapped up front in regions of at most MAX_REGION_SIZE bytes, each ending on a record boundary, after which the
+// channel is closed (mappings stay valid until they are garbage collected). Splits also fall on record
+// boundaries, so parallel streams over the file see whole records.
+final class MappedRecordSpliterator implements Spliterator<ByteBuffer>
+{
+    static final int MAX_REGION_SIZE = 1 << 30;
+
+    private final List<ByteBuffer> regions;
+    private int regionIndex;
+    private final int regionFence;
+    private final byte delimiter;
+    private final int recordSize; // 0 for delimited records
+
+    // The current region, and the part of it this spliterator still covers.
+    private ByteBuffer region;
+    private int position;
+    private int limit;
+
+    private MappedRecordSpliterator(
+            List<ByteBuffer> regions,
+            int regionIndex,
+            int regionFence,
+            byte delimiter,
+            int recordSize)
+    {
+        this.regions = regions;
+        this.regionIndex = regionIndex;
+        this.regionFence = regionFence;
+        this.delimiter = delimiter;
+        this.recordSize = recordSize;
+        this.loadRegion();
+    }
+
+    static MappedRecordSpliterator delimited(Path path, byte delimiter)
+    {
+        List<ByteBuffer> regions = mapRegions(path, delimiter, 0);
+        return new MappedRecordSpliterator(regions, 0, regions.size(), delimiter, 0);
+    }
+
+    static MappedRecordSpliterator fixed(Path path, int recordSize)
+    {
+        if (recordSize <= 0)
+        {
+            throw new IllegalArgumentException("recordSize must be positive: " + recordSize);
+        }
+
+        List<ByteBuffer> regions = mapRegions(path, (byte) 0, recordSize);
+        return new MappedRecordSpliterator(regions, 0, regions.size(), (byte) 0, recordSize);
+    }
+
+    private static List<ByteBuffer> mapRegions(Path path, byte delimiter, int recordSize)
+    {
+        List<ByteBuffer> regions = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long fileSize = channel.size();
+            long regionStart = 0;
+            int maxRegionSize = recordSize > 0 ? MAX_REGION_SIZE / recordSize * recordSize : MAX_REGION_SIZE;
+
+            if (maxRegionSize == 0)
+            {
+                throw new IllegalArgumentException("recordSize larger than " + MAX_REGION_SIZE + " bytes");
+            }
+
+            while (regionStart < fileSize)
+            {
+                int size = (int) Math.min(maxRegionSize, fileSize - regionStart);
+                ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, size);
+
+                if (recordSize == 0 && regionStart + size < fileSize)
+                {
+                    // End the region just after its last delimiter, so no record straddles two regions.
+                    int end = size - 1;
+
+                    while (end >= 0 && region.get(end) != delimiter)
+                    {
+                        --end;
+                    }
+
+                    if (end < 0)
+                    {
+                        throw new IllegalStateException("Record longer than " + MAX_REGION_SIZE + " bytes in " + path);
+                    }
+
+                    size = end + 1;
+                    region = region.slice(0, size);
+                }
+
+                regions.add(region);
+                regionStart += size;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        return regions;
+    }
+
+    private void loadRegion()
+    {
+        if (this.regionIndex < this.regionFence)
+        {
+            this.region = this.regions.get(this.regionIndex);
+            this.position = 0;
+            this.limit = this.region.limit();
+        }
+        else
+        {
+            this.region = null;
+            this.position = 0;
+            this.limit = 0;
+        }
+    }
+
+    // Index just past the end of the record starting at 'from' (including its delimiter, if any).
+    private int recordEnd(int from)
+    {
+        if (this.recordSize > 0)
+        {
+            return Math.min(from + this.recordSize, this.limit);
+        }
+
+        int end = from;
+
+        while (end < this.limit && this.region.get(end) != this.delimiter)
+        {
+            ++end;
+        }
+
+        return end < this.limit ? end + 1 : end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer1<? super ByteBuffer> consumer)
+    {
+        while (this.position == this.limit)
+        {
+            if (this.region == null)
+            {
+                return false;
+            }
+
+            ++this.regionIndex;
+            this.loadRegion();
+        }
+
+        int start = this.position;
+        int end = this.recordEnd(start);
+        int length = end - start;
+
+        if (this.recordSize == 0 && end > start && this.region.get(end - 1) == this.delimiter)
+        {
+            --length;
+        }
+
+        this.position = end;
+        consumer.accept(this.region.slice(start, length));
+        return true;
+    }
+
+    @Override
+    public Spliterator<ByteBuffer> trySplit()
+    {
+        if (this.region == null)
+        {
+            return null;
+        }
+
+        if (this.regionFence - this.regionIndex > 1)
+        {
+            // Hand whole regions to the prefix: everything from the current region up to the middle one.
+            int mid = (this.regionIndex + this.regionFence) >>> 1;
+            MappedRecordSpliterator prefix = new MappedRecordSpliterator(
+                    this.regions, this.regionIndex, mid, this.delimiter, this.recordSize);
+            prefix.position = this.position;
+
+            this.regionIndex = mid;
+            this.loadRegion();
+            return prefix;
+        }
+
+        // Within the last region: split at the first record boundary at or after the midpoint.
+        int mid = this.position + (this.limit - this.position) / 2;
+
+        if (this.recordSize > 0)
+        {
+            mid -= (mid - this.position) % this.recordSize;
+        }
+        else if (mid > this.position)
+        {
+            mid = this.recordEnd(mid - 1);
+        }
+
+        if (mid <= this.position || mid >= this.limit)
+        {
+            return null;
+        }
+
+        MappedRecordSpliterator prefix = new MappedRecordSpliterator(
+                List.of(this.region.slice(this.position, mid - this.position)), 0, 1, this.delimiter, this.recordSize);
+
+        this.position = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        long bytes = this.limit - this.position;
+
+        for (int i = this.regionIndex + 1; i < this.regionFence; ++i)
+        {
+            bytes += this.regions.get(i).limit();
+        }
+
+        // Exact for fixed-size records (the last one may be short); otherwise an upper bound.
+        return this.recordSize > 0 ? (bytes + this.recordSize - 1) / this.recordSize : bytes;
+    }
+
+    @Override
+    public int characteristics()
+    {
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        return this.recordSize > 0 ? characteristics | Spliterator.SIZED | Spliterator.SUBSIZED : characteristics;
+    }
+}
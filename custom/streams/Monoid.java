@@ -0,0 +1,27 @@
+package custom.streams;
+
+// An associative combine with a neutral element (cf. reduce(identity, BinaryOperator)), for the sliding aggregations.
+// combine needn't be commutative: windows are combined oldest to newest.
+public interface Monoid<A>
+{
+    A identity();
+
+    A combine(A left, A right);
+
+    static <A> Monoid<A> of(A identity, Function2<A, A, A> combiner)
+    {
+        return new Monoid<A>() {
+            @Override
+            public A identity()
+            {
+                return identity;
+            }
+
+            @Override
+            public A combine(A left, A right)
+            {
+                return combiner.apply(left, right);
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package custom.streams;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Sliding minimum (or maximum, with a reversed comparator) in amortized O(1) per element: a deque of the elements
+// that can still become the minimum, increasing from oldest to newest. A new element first removes the newer
+// elements greater than it, which can no longer be the minimum while it is in the window; the minimum is then the
+// oldest element, unless it has been evicted. Of equal minima, the oldest is returned.
+final class MonotonicWindow<T> implements SlidingWindow<T, T>
+{
+    private final long length;
+    private final Comparator<? super T> comparator;
+
+    // Ring buffer deque, oldest at head.
+    private long[] positions = new long[16];
+    private Object[] elements = new Object[16];
+    private int head = 0;
+    private int size = 0;
+
+    MonotonicWindow(long length, Comparator<? super T> comparator)
+    {
+        this.length = length;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public T push(long position, T element)
+    {
+        int mask = this.elements.length - 1;
+
+        while (this.size > 0 && position - this.positions[this.head] >= this.length)
+        {
+            this.elements[this.head] = null;
+            this.head = (this.head + 1) & mask;
+            --this.size;
+        }
+
+        while (this.size > 0)
+        {
+            int last = (this.head + this.size - 1) & mask;
+
+            if (this.comparator.compare(this.cast(this.elements[last]), element) <= 0)
+            {
+                break;
+            }
+
+            this.elements[last] = null;
+            --this.size;
+        }
+
+        if (this.size == this.elements.length)
+        {
+            this.grow();
+            mask = this.elements.length - 1;
+        }
+
+        int tail = (this.head + this.size) & mask;
+        this.positions[tail] = position;
+        this.elements[tail] = element;
+        ++this.size;
+        return this.cast(this.elements[this.head]);
+    }
+
+    // Doubles the capacity, unwrapping the ring so it starts at 0.
+    private void grow()
+    {
+        int capacity = this.elements.length;
+        long[] positions = Arrays.copyOf(this.positions, capacity * 2);
+        Object[] elements = Arrays.copyOf(this.elements, capacity * 2);
+        System.arraycopy(this.positions, 0, positions, capacity, this.head);
+        System.arraycopy(this.elements, 0, elements, capacity, this.head);
+        System.arraycopy(positions, this.head, positions, 0, capacity);
+        System.arraycopy(elements, this.head, elements, 0, capacity);
+        Arrays.fill(elements, capacity, capacity * 2, null);
+        this.positions = positions;
+        this.elements = elements;
+        this.head = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object element)
+    {
+        return (T) element;
+    }
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface ObjDoubleConsumer2<T> // ObjDoubleConsumer<T>
+{
+    void accept(T input1, double input2);
+}
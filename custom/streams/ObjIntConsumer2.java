@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface ObjIntConsumer2<T> // ObjIntConsumer<T>
+{
+    void accept(T input1, int input2);
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface ObjLongConsumer2<T> // ObjLongConsumer<T>
+{
+    void accept(T input1, long input2);
+}
@@ -0,0 +1,60 @@
+package custom.streams;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// A registry of instrumented stages by name, in the order they were first instrumented. Stages instrumented under the
+// same name (e.g. the same pipeline built on every request) share one set of totals.
+public final class PipelineMetrics
+{
+    private static final PipelineMetrics GLOBAL = new PipelineMetrics();
+
+    private final Map<String, StageMetrics> stages = new LinkedHashMap<>();
+
+    // The registry used by Stream2.instrument(name).
+    public static PipelineMetrics global()
+    {
+        return GLOBAL;
+    }
+
+    public synchronized StageMetrics stage(String name)
+    {
+        return this.stages.computeIfAbsent(name, StageMetrics::new);
+    }
+
+    public synchronized List<StageMetrics.Snapshot> snapshot()
+    {
+        List<StageMetrics.Snapshot> snapshots = new ArrayList<>(this.stages.size());
+
+        for (StageMetrics stage : this.stages.values())
+        {
+            snapshots.add(stage.snapshot());
+        }
+
+        return snapshots;
+    }
+
+    // Zeroes every stage's totals (the stages stay registered).
+    public synchronized void reset()
+    {
+        for (StageMetrics stage : this.stages.values())
+        {
+            stage.reset();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (StageMetrics.Snapshot snapshot : this.snapshot())
+        {
+            builder.append(snapshot).append('\n');
+        }
+
+        return builder.toString();
+    }
+}
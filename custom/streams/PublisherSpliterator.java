@@ -0,0 +1,211 @@
+package custom.streams;
+
+import java.lang.ref.Cleaner;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.LockSupport;
+
+// Spliterator over a Flow.Publisher, for Stream2.fromPublisher. It subscribes on the first tryAdvance and never
+// asks for more than 'prefetch' elements beyond what it has handed out, so the queue between the publisher's thread
+// and the consuming thread is bounded and never overflows. Demand is replenished in batches of about 3/4 of the
+// prefetch as elements are consumed. The consumer parks while the queue is empty and is unparked by the next signal.
+//
+// The subscription is cancelled when the pipeline stops early (see cancel()), or else once this spliterator is
+// garbage: the publisher only references the Receiver, so an abandoned spliterator can still be collected.
+final class PublisherSpliterator<T> implements Spliterator<T>
+{
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Flow.Publisher<? extends T> publisher;
+    private final Receiver<T> receiver;
+    private final int replenishBatch;
+
+    private boolean isSubscribed = false;
+    private int consumedSinceRequest = 0;
+
+    PublisherSpliterator(Flow.Publisher<? extends T> publisher, int prefetch)
+    {
+        if (prefetch <= 0)
+        {
+            throw new IllegalArgumentException("prefetch must be positive: " + prefetch);
+        }
+
+        this.publisher = publisher;
+        this.receiver = new Receiver<>(prefetch);
+        this.replenishBatch = prefetch - (prefetch >> 2);
+        CLEANER.register(this, this.receiver::cancel);
+    }
+
+    // Stops the publisher early, when the pipeline won't pull any more elements.
+    @Override
+    public void cancel()
+    {
+        this.receiver.cancel();
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer1<? super T> consumer)
+    {
+        Receiver<T> receiver = this.receiver;
+
+        if (!this.isSubscribed)
+        {
+            this.isSubscribed = true;
+            this.publisher.subscribe(receiver);
+        }
+
+        while (true)
+        {
+            boolean isDone = receiver.isDone; // Read before polling, so no element sent before completion is missed.
+            T element = receiver.queue.poll();
+
+            if (element != null)
+            {
+                if (++this.consumedSinceRequest == this.replenishBatch)
+                {
+                    this.consumedSinceRequest = 0;
+                    receiver.subscription.request(this.replenishBatch);
+                }
+
+                consumer.accept(element);
+                return true;
+            }
+
+            if (isDone)
+            {
+                Throwable error = receiver.error;
+
+                if (error == null)
+                {
+                    return false;
+                }
+
+                if (error instanceof RuntimeException)
+                {
+                    throw (RuntimeException) error;
+                }
+
+                if (error instanceof Error)
+                {
+                    throw (Error) error;
+                }
+
+                throw new CompletionException(error);
+            }
+
+            // Publish the waiter before rechecking. Each signal stores its element or isDone (volatile) before reading the
+            // waiter (volatile), so either the recheck sees the signal or the signal sees the waiter and unparks it.
+            receiver.waiter = Thread.currentThread();
+
+            if (receiver.queue.isEmpty() && !receiver.isDone)
+            {
+                LockSupport.park(this);
+            }
+
+            receiver.waiter = null;
+        }
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+
+    // The subscriber side, shared with the publisher's thread.
+    private static final class Receiver<T> implements Flow.Subscriber<T>
+    {
+        private final int prefetch;
+        final SpscArrayQueue<T> queue;
+
+        volatile Flow.Subscription subscription = null;
+        volatile boolean isDone = false;
+        volatile Throwable error = null;
+        volatile Thread waiter = null;
+        private volatile boolean isCancelled = false;
+
+        Receiver(int prefetch)
+        {
+            this.prefetch = prefetch;
+            this.queue = new SpscArrayQueue<>(prefetch);
+        }
+
+        void cancel()
+        {
+            this.isCancelled = true;
+            Flow.Subscription subscription = this.subscription;
+
+            if (subscription != null)
+            {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            if (this.subscription != null)
+            {
+                subscription.cancel();
+                return;
+            }
+
+            this.subscription = subscription;
+
+            if (this.isCancelled)
+            {
+                subscription.cancel(); // Cancelled before the publisher got around to subscribing.
+                return;
+            }
+
+            subscription.request(this.prefetch);
+        }
+
+        @Override
+        public void onNext(T item)
+        {
+            Objects.requireNonNull(item);
+
+            if (!this.queue.offer(item))
+            {
+                this.subscription.cancel();
+                this.onError(new IllegalStateException("Publisher sent more elements than were requested"));
+                return;
+            }
+
+            this.signal();
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            this.error = throwable;
+            this.isDone = true;
+            this.signal();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            this.isDone = true;
+            this.signal();
+        }
+
+        private void signal()
+        {
+            Thread waiter = this.waiter;
+
+            if (waiter != null)
+            {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package custom.streams;
+
+// The ints in [index, fence), boxed one at a time as they are handed out: exact size, cheap splits, and O(1) slicing
+// for take/drop.
+final class RangeSpliterator implements SliceableSpliterator<Integer>
+{
+    private int index;
+    private final int fence;
+
+    RangeSpliterator(int index, int fence)
+    {
+        this.index = index;
+        this.fence = Math.max(index, fence);
+    }
+
+    @Override
+    public RangeSpliterator slice(long skip, long limit)
+    {
+        int from = (int) (this.index + Math.min(Math.max(skip, 0), (long) this.fence - this.index));
+        int to = (int) (from + Math.min(Math.max(limit, 0), (long) this.fence - from));
+
+        return new RangeSpliterator(from, to);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer1<? super Integer> consumer)
+    {
+        if (this.index < this.fence)
+        {
+            consumer.accept(this.index++);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer1<? super Integer> consumer)
+    {
+        int fence = this.fence;
+
+        for (int i = this.index; i < fence; ++i)
+        {
+            consumer.accept(i);
+        }
+
+        this.index = fence;
+    }
+
+    @Override
+    public Spliterator<Integer> trySplit()
+    {
+        int lo = this.index;
+        int mid = (int) (((long) lo + this.fence) >>> 1);
+
+        if (lo >= mid)
+        {
+            return null;
+        }
+
+        this.index = mid;
+        return new RangeSpliterator(lo, mid);
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        return (long) this.fence - this.index;
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED
+                | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+    }
+}
@@ -0,0 +1,60 @@
+package custom.streams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+// Writes elements to and reads them back from a spill file (see SpillOptions). read must consume exactly what write
+// produced for the element.
+public interface Serializer<T>
+{
+    void write(DataOutput output, T element) throws IOException;
+
+    T read(DataInput input) throws IOException;
+
+    // Java serialization of each element on its own, length-prefixed. Works for any Serializable type, but a
+    // serializer written for the type is usually several times smaller and faster.
+    static <T extends Serializable> Serializer<T> javaSerialization()
+    {
+        return new Serializer<T>() {
+            @Override
+            public void write(DataOutput output, T element) throws IOException
+            {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+                try (ObjectOutputStream objects = new ObjectOutputStream(bytes))
+                {
+                    objects.writeObject(element);
+                }
+
+                output.writeInt(bytes.size());
+                output.write(bytes.toByteArray());
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T read(DataInput input) throws IOException
+            {
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+                {
+                    return (T) objects.readObject();
+                }
+                catch (ClassNotFoundException e)
+                {
+                    InvalidObjectException invalid = new InvalidObjectException(e.getMessage());
+                    invalid.initCause(e);
+                    throw invalid;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package custom.streams;
+
+// Push-side counterpart of Spliterator (cf. java.util.stream.Sink). A terminal operation calls begin(size) once,
+// then accept(element) for each element until the source is empty or cancellationRequested() returns true,
+// then end() once. A size of -1 means unknown.
+public interface Sink<T> extends Consumer1<T>
+{
+    default void begin(long size)
+    {
+    }
+
+    default void end()
+    {
+    }
+
+    default boolean cancellationRequested()
+    {
+        return false;
+    }
+
+    // Base for intermediate stages: forwards begin/end/cancellationRequested to the next sink in the chain.
+    abstract class Chained<T, U> implements Sink<T>
+    {
+        protected final Sink<? super U> downstream;
+
+        public Chained(Sink<? super U> downstream)
+        {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void begin(long size)
+        {
+            this.downstream.begin(size);
+        }
+
+        @Override
+        public void end()
+        {
+            this.downstream.end();
+        }
+
+        @Override
+        public boolean cancellationRequested()
+        {
+            return this.downstream.cancellationRequested();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package custom.streams;
+
+// An index-based source spliterator that take/drop can cut down in O(1), instead of counting elements through a stage.
+interface SliceableSpliterator<T> extends Spliterator<T>
+{
+    // A new spliterator over the remaining elements after skipping 'skip' of them, limited to 'limit' elements.
+    // Negative counts act as zero, as they do for take/drop.
+    SliceableSpliterator<T> slice(long skip, long limit);
+}
@@ -0,0 +1,9 @@
+package custom.streams;
+
+// Incremental state of a sliding aggregation. push adds an element at the given position (its index, or its
+// timestamp), first evicting every element at least 'length' positions older, and returns the aggregate of the
+// window (position - length, position]. Positions must not decrease.
+interface SlidingWindow<T, R>
+{
+    R push(long position, T element);
+}
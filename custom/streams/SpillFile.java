@@ -0,0 +1,151 @@
+package custom.streams;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+// A temporary file of serialized elements, written once and then read back once. It deletes itself when read to the
+// end or deleted explicitly (by Spiller.close(), for results that aren't read to the end).
+final class SpillFile<T>
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+    private final Serializer<T> serializer;
+    private DataOutputStream output;
+    private DataInputStream input = null;
+    private long count = 0;
+
+    SpillFile(SpillOptions<T> options)
+    {
+        this.serializer = options.serializer;
+
+        try
+        {
+            this.path = Files.createTempFile(options.directory, "stream2-spill-", ".tmp");
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.path), BUFFER_SIZE));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void write(T element)
+    {
+        try
+        {
+            this.serializer.write(this.output, element);
+            ++this.count;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    long count()
+    {
+        return this.count;
+    }
+
+    // Ends writing, releasing the file handle and write buffer until the file is read.
+    void finish()
+    {
+        if (this.output == null)
+        {
+            return;
+        }
+
+        try
+        {
+            this.output.close();
+            this.output = null;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Ends writing (if not finished yet) and reads the elements back in order.
+    Iterator<T> read()
+    {
+        this.finish();
+
+        try
+        {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.path), BUFFER_SIZE));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        return new Iterator<T>() {
+            private long remaining = SpillFile.this.count;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (this.remaining == 0)
+                {
+                    SpillFile.this.delete();
+                    return false;
+                }
+
+                return true;
+            }
+
+            @Override
+            public T next()
+            {
+                if (this.remaining == 0)
+                {
+                    throw new NoSuchElementException();
+                }
+
+                try
+                {
+                    T element = SpillFile.this.serializer.read(SpillFile.this.input);
+                    --this.remaining;
+                    return element;
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    void delete()
+    {
+        try
+        {
+            if (this.output != null)
+            {
+                this.output.close();
+                this.output = null;
+            }
+
+            if (this.input != null)
+            {
+                this.input.close();
+                this.input = null;
+            }
+
+            Files.deleteIfExists(this.path);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
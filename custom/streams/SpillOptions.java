@@ -0,0 +1,39 @@
+package custom.streams;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// How the memory-bounded stages (Stream2.sorted and Stream2.groupingBy with options) spill: elements are held on the
+// heap until their estimated sizes add up to more than budgetBytes, and are then written to temporary files in
+// 'directory' with the serializer.
+public final class SpillOptions<T>
+{
+    final Serializer<T> serializer;
+    final ToLongFunction1<? super T> sizeOf;
+    final long budgetBytes;
+    final Path directory;
+
+    private SpillOptions(Serializer<T> serializer, ToLongFunction1<? super T> sizeOf, long budgetBytes, Path directory)
+    {
+        if (budgetBytes <= 0)
+        {
+            throw new IllegalArgumentException("budgetBytes must be positive: " + budgetBytes);
+        }
+
+        this.serializer = serializer;
+        this.sizeOf = sizeOf;
+        this.budgetBytes = budgetBytes;
+        this.directory = directory;
+    }
+
+    // sizeOf estimates the heap footprint of one element, in bytes.
+    public static <T> SpillOptions<T> of(Serializer<T> serializer, ToLongFunction1<? super T> sizeOf, long budgetBytes)
+    {
+        return new SpillOptions<>(serializer, sizeOf, budgetBytes, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    public SpillOptions<T> inDirectory(Path directory)
+    {
+        return new SpillOptions<>(this.serializer, this.sizeOf, this.budgetBytes, directory);
+    }
+}
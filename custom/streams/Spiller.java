@@ -0,0 +1,12 @@
+package custom.streams;
+
+// The state of a memory-bounded barrier stage (ExternalSorter, SpillingGrouper): takes every upstream element, then
+// hands out its result once. close() deletes any spill files the result still holds, for consumers that stop early.
+interface Spiller<T, R>
+{
+    void add(T element);
+
+    Spliterator<R> result();
+
+    void close();
+}
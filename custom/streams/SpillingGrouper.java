@@ -0,0 +1,222 @@
+package custom.streams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Groups more elements than fit in the heap budget. Until the buffered elements outgrow it, everything happens in
+// memory; after that, elements are hash-partitioned by key into PARTITION_COUNT spill files, and each partition is
+// grouped on its own when the result is read, one partition at a time (or several in parallel, as the result splits
+// by partition). A partition that still doesn't fit is partitioned again with a different hash, up to MAX_DEPTH
+// levels deep, below which it is grouped in memory regardless (e.g. a single key with too many elements).
+final class SpillingGrouper<T, K, V> implements Spiller<T, Map.Entry<K, V>>
+{
+    private static final int PARTITION_BITS = 6;
+    private static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+    private static final int MAX_DEPTH = 3;
+
+    private final Function1<? super T, ? extends K> classifier;
+    private final Collector<? super T, ?, Map<K, V>> grouping;
+    private final SpillOptions<T> options;
+    private final int depth;
+
+    private ArrayList<T> buffer = new ArrayList<>();
+    private long bufferedBytes = 0;
+    private List<SpillFile<T>> partitions = null;
+    private final List<SpillingGrouper<T, K, V>> openPartitions = new ArrayList<>();
+
+    SpillingGrouper(
+            Function1<? super T, ? extends K> classifier,
+            Collector<? super T, ?, Map<K, V>> grouping,
+            SpillOptions<T> options,
+            int depth)
+    {
+        this.classifier = classifier;
+        this.grouping = grouping;
+        this.options = options;
+        this.depth = depth;
+    }
+
+    @Override
+    public void add(T element)
+    {
+        if (this.partitions != null)
+        {
+            this.partitionOf(element).write(element);
+            return;
+        }
+
+        this.buffer.add(element);
+        this.bufferedBytes += this.options.sizeOf.apply(element);
+
+        if (this.bufferedBytes > this.options.budgetBytes && this.depth < MAX_DEPTH)
+        {
+            this.spill();
+        }
+    }
+
+    private void spill()
+    {
+        this.partitions = new ArrayList<>(PARTITION_COUNT);
+
+        for (int i = 0; i < PARTITION_COUNT; ++i)
+        {
+            this.partitions.add(new SpillFile<>(this.options));
+        }
+
+        for (T element : this.buffer)
+        {
+            this.partitionOf(element).write(element);
+        }
+
+        this.buffer = null;
+    }
+
+    private SpillFile<T> partitionOf(T element)
+    {
+        int hash = Objects.hashCode(this.classifier.apply(element));
+        // A different (odd) multiplier per level, so a partition split again doesn't all land in one partition.
+        int mixed = (hash ^ hash >>> 16) * (0x9E3779B9 + 0x632BE5AA * this.depth);
+        return this.partitions.get(mixed >>> 32 - PARTITION_BITS);
+    }
+
+    @Override
+    public Spliterator<Map.Entry<K, V>> result()
+    {
+        if (this.partitions == null)
+        {
+            Map<K, V> groups = collectAll(this.buffer, this.grouping);
+            this.buffer = null;
+            return Stream2.adaptSpliterator(groups.entrySet().spliterator());
+        }
+
+        return new PartitionSpliterator(0, PARTITION_COUNT);
+    }
+
+    private static <T, A, R> R collectAll(List<T> elements, Collector<? super T, A, R> collector)
+    {
+        A acc = collector.supplier().get();
+        Consumer2<A, ? super T> accumulator = collector.accumulator();
+
+        for (T element : elements)
+        {
+            accumulator.accept(acc, element);
+        }
+
+        return Collectors.finish(collector, acc);
+    }
+
+    @Override
+    public void close()
+    {
+        if (this.partitions != null)
+        {
+            for (SpillFile<T> partition : this.partitions)
+            {
+                partition.delete();
+            }
+        }
+
+        synchronized (this.openPartitions)
+        {
+            for (SpillingGrouper<T, K, V> partition : this.openPartitions)
+            {
+                partition.close();
+            }
+        }
+    }
+
+    private final class PartitionSpliterator implements Spliterator<Map.Entry<K, V>>
+    {
+        private int index;
+        private final int fence;
+        private SpillingGrouper<T, K, V> partition = null;
+        private Spliterator<Map.Entry<K, V>> groups = null;
+
+        PartitionSpliterator(int index, int fence)
+        {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        // Groups the next partition, which is read back through a grouper one level down.
+        private boolean nextPartition()
+        {
+            if (this.index == this.fence)
+            {
+                return false;
+            }
+
+            SpillingGrouper<T, K, V> previous = this.partition;
+            this.partition = new SpillingGrouper<>(
+                    SpillingGrouper.this.classifier,
+                    SpillingGrouper.this.grouping,
+                    SpillingGrouper.this.options,
+                    SpillingGrouper.this.depth + 1);
+
+            // Only the partitions being read are kept, for close(); the groups of finished ones can be collected.
+            synchronized (SpillingGrouper.this.openPartitions)
+            {
+                SpillingGrouper.this.openPartitions.remove(previous);
+                SpillingGrouper.this.openPartitions.add(this.partition);
+            }
+
+            for (Iterator<T> elements = SpillingGrouper.this.partitions.get(this.index++).read(); elements.hasNext(); )
+            {
+                this.partition.add(elements.next());
+            }
+
+            this.groups = this.partition.result();
+            return true;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer1<? super Map.Entry<K, V>> consumer)
+        {
+            while (this.groups == null || !this.groups.tryAdvance(consumer))
+            {
+                if (!this.nextPartition())
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer1<? super Map.Entry<K, V>> consumer)
+        {
+            do
+            {
+                if (this.groups != null)
+                {
+                    this.groups.forEachRemaining(consumer);
+                }
+            }
+            while (this.nextPartition());
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> trySplit()
+        {
+            int mid = (this.index + this.fence) >>> 1;
+
+            if (this.groups != null || mid == this.index)
+            {
+                return null;
+            }
+
+            Spliterator<Map.Entry<K, V>> prefix = new PartitionSpliterator(this.index, mid);
+            this.index = mid;
+            return prefix;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return Spliterator.DISTINCT;
+        }
+    }
+}
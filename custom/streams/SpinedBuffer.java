@@ -0,0 +1,244 @@
+package custom.streams;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Append-only buffer for materializing results: elements go into a list of chunks (the spine), each about as large as
+// everything before it up to MAX_CHUNK_SIZE, so growing never copies an element and never allocates one huge array.
+// Buffers filled in parallel are concatenated by linking their chunks. Of a known size, the first chunk is allocated
+// to hold exactly that many elements; a buffer that is one full chunk then hands that chunk out as its array.
+final class SpinedBuffer<T>
+{
+    private static final int MIN_CHUNK_SIZE = 16;
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final IntFunction1<Object[]> NEW_OBJECT_ARRAY = Object[]::new;
+
+    private final IntFunction1<? extends Object[]> newFirstChunk;
+    private int firstChunkSize = MIN_CHUNK_SIZE;
+
+    private Object[][] chunks = new Object[8][];
+    private long[] chunkStarts = new long[8]; // Index of each chunk's first element; chunk i ends where i + 1 starts.
+    private int chunkCount = 0;
+    private Object[] current = null; // The last chunk.
+    private int currentIndex = 0;
+    private long count = 0;
+
+    SpinedBuffer()
+    {
+        this(NEW_OBJECT_ARRAY);
+    }
+
+    // The first chunk is allocated by newFirstChunk, so that toArray can hand it out when it ends up exactly full.
+    SpinedBuffer(IntFunction1<? extends Object[]> newFirstChunk)
+    {
+        this.newFirstChunk = newFirstChunk;
+    }
+
+    // Before the first add: the expected element count, if known (-1 if not).
+    void presize(long size)
+    {
+        if (size > 0 && size <= MAX_ARRAY_SIZE)
+        {
+            this.firstChunkSize = (int) size;
+        }
+    }
+
+    void add(T element)
+    {
+        if (this.current == null || this.currentIndex == this.current.length)
+        {
+            this.addChunk(this.chunkCount == 0
+                    ? this.newFirstChunk.apply(this.firstChunkSize)
+                    : new Object[(int) Math.max(MIN_CHUNK_SIZE, Math.min(this.count, MAX_CHUNK_SIZE))],
+                    this.count);
+            this.currentIndex = 0;
+        }
+
+        this.current[this.currentIndex++] = element;
+        ++this.count;
+    }
+
+    private void addChunk(Object[] chunk, long start)
+    {
+        if (this.chunkCount == this.chunks.length)
+        {
+            this.chunks = Arrays.copyOf(this.chunks, this.chunkCount * 2);
+            this.chunkStarts = Arrays.copyOf(this.chunkStarts, this.chunkCount * 2);
+        }
+
+        this.chunks[this.chunkCount] = chunk;
+        this.chunkStarts[this.chunkCount++] = start;
+        this.current = chunk;
+    }
+
+    // Appends the elements of 'later' by taking over its chunks (the combiner for parallel collection). Consumes
+    // 'later'.
+    SpinedBuffer<T> concat(SpinedBuffer<T> later)
+    {
+        if (later.count == 0)
+        {
+            return this;
+        }
+
+        if (this.count == 0)
+        {
+            return later;
+        }
+
+        for (int i = 0; i < later.chunkCount; ++i)
+        {
+            this.addChunk(later.chunks[i], this.count + later.chunkStarts[i]);
+        }
+
+        // This buffer's last chunk may now be partly empty; the chunk starts keep track of that.
+        this.currentIndex = later.currentIndex;
+        this.count += later.count;
+        return this;
+    }
+
+    long count()
+    {
+        return this.count;
+    }
+
+    private int chunkLength(int chunkIndex)
+    {
+        long end = chunkIndex + 1 < this.chunkCount ? this.chunkStarts[chunkIndex + 1] : this.count;
+        return (int) (end - this.chunkStarts[chunkIndex]);
+    }
+
+    private boolean isOneFullChunk()
+    {
+        return this.chunkCount == 1 && this.current.length == this.count;
+    }
+
+    private int checkedSize()
+    {
+        if (this.count > MAX_ARRAY_SIZE)
+        {
+            throw new IllegalStateException(this.count + " elements are too many for an array");
+        }
+
+        return (int) this.count;
+    }
+
+    // The elements in an array. Without copying if the buffer is one exactly full chunk, which the buffer then
+    // no longer owns.
+    Object[] toArray()
+    {
+        if (this.isOneFullChunk() && this.newFirstChunk == NEW_OBJECT_ARRAY)
+        {
+            return this.current;
+        }
+
+        return this.copyInto(new Object[this.checkedSize()]);
+    }
+
+    // Like toArray(), for an array from the generator; without copying if the first chunk came from this generator.
+    @SuppressWarnings("unchecked")
+    <A> A[] toArray(IntFunction1<A[]> generator)
+    {
+        if (this.isOneFullChunk() && this.newFirstChunk == generator)
+        {
+            return (A[]) this.current;
+        }
+
+        int size = this.checkedSize();
+        A[] array = generator.apply(size);
+
+        if (array.length != size)
+        {
+            throw new IllegalStateException("Generator returned an array of length " + array.length + " for " + size);
+        }
+
+        return this.copyInto(array);
+    }
+
+    private <A> A[] copyInto(A[] array)
+    {
+        for (int i = 0; i < this.chunkCount; ++i)
+        {
+            System.arraycopy(this.chunks[i], 0, array, (int) this.chunkStarts[i], this.chunkLength(i));
+        }
+
+        return array;
+    }
+
+    // An unmodifiable, random-access view of the elements, which looks up the chunk of an index by binary search.
+    List<T> asList()
+    {
+        int size = this.checkedSize();
+
+        if (this.chunkCount == 1)
+        {
+            Object[] chunk = this.current;
+
+            return new ChunkList<T>(size) {
+                @Override
+                @SuppressWarnings("unchecked")
+                public T get(int index)
+                {
+                    return (T) chunk[this.checkIndex(index)];
+                }
+
+                @Override
+                public Object[] toArray()
+                {
+                    return Arrays.copyOf(chunk, this.size(), Object[].class);
+                }
+            };
+        }
+
+        return new ChunkList<T>(size) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public T get(int index)
+            {
+                long[] chunkStarts = SpinedBuffer.this.chunkStarts;
+                int chunkIndex = Arrays.binarySearch(chunkStarts, 0, SpinedBuffer.this.chunkCount, this.checkIndex(index));
+
+                if (chunkIndex < 0)
+                {
+                    chunkIndex = -chunkIndex - 2; // The chunk before the insertion point.
+                }
+
+                return (T) SpinedBuffer.this.chunks[chunkIndex][(int) (index - chunkStarts[chunkIndex])];
+            }
+
+            @Override
+            public Object[] toArray()
+            {
+                return SpinedBuffer.this.copyInto(new Object[this.size()]);
+            }
+        };
+    }
+
+    private abstract static class ChunkList<T> extends AbstractList<T> implements RandomAccess
+    {
+        private final int size;
+
+        ChunkList(int size)
+        {
+            this.size = size;
+        }
+
+        int checkIndex(int index)
+        {
+            if (index < 0 || index >= this.size)
+            {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.size);
+            }
+
+            return index;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+    }
+}
@@ -2,5 +2,51 @@ package custom.streams;
 
 public interface Spliterator<T>
 {
+    // Same bit values as java.util.Spliterator, so adapted spliterators can pass them straight through.
+    int DISTINCT = java.util.Spliterator.DISTINCT;
+    int SORTED = java.util.Spliterator.SORTED;
+    int ORDERED = java.util.Spliterator.ORDERED;
+    int SIZED = java.util.Spliterator.SIZED;
+    int NONNULL = java.util.Spliterator.NONNULL;
+    int IMMUTABLE = java.util.Spliterator.IMMUTABLE;
+    int CONCURRENT = java.util.Spliterator.CONCURRENT;
+    int SUBSIZED = java.util.Spliterator.SUBSIZED;
+
     boolean tryAdvance(Consumer1<? super T> consumer);
-}
\ No newline at end of file
+
+    // Bulk traversal: pushes every remaining element to the consumer. Stages override this with a tight loop
+    // over their upstream's forEachRemaining, so a whole pipeline can be inlined into a single loop.
+    default void forEachRemaining(Consumer1<? super T> consumer)
+    {
+        while (this.tryAdvance(consumer));
+    }
+
+    // Returns a spliterator covering a prefix of the remaining elements (which this one will then no longer
+    // cover), or null if this spliterator cannot be split.
+    default Spliterator<T> trySplit()
+    {
+        return null;
+    }
+
+    // Exact if SIZED, otherwise an upper bound (Long.MAX_VALUE if unknown).
+    default long estimateSize()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    default int characteristics()
+    {
+        return 0;
+    }
+
+    // Tells the spliterator that no more elements will be pulled from it, so it can stop work started ahead of
+    // demand (a publisher subscription, in-flight mapAsync calls). Stages pass it on to their upstream.
+    default void cancel()
+    {
+    }
+
+    default boolean hasCharacteristics(int characteristics)
+    {
+        return (this.characteristics() & characteristics) == characteristics;
+    }
+}
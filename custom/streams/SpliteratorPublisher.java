@@ -0,0 +1,155 @@
+package custom.streams;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Flow.Publisher over a spliterator, for Stream2.toPublisher. Elements are pulled with tryAdvance only as the
+// subscriber's request(n) demand arrives, on whichever thread calls request. Reentrant and concurrent request calls
+// are folded into the one drain loop already running, so signals stay serial and the stack stays flat. A stream can
+// be traversed once, so only the first subscriber is accepted.
+final class SpliteratorPublisher<T> implements Flow.Publisher<T>
+{
+    private final Spliterator<? extends T> elements;
+    private final AtomicBoolean isSubscribed = new AtomicBoolean();
+
+    SpliteratorPublisher(Spliterator<? extends T> elements)
+    {
+        this.elements = elements;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber)
+    {
+        if (!this.isSubscribed.compareAndSet(false, true))
+        {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n)
+                {
+                }
+
+                @Override
+                public void cancel()
+                {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Stream already subscribed to"));
+            return;
+        }
+
+        subscriber.onSubscribe(new DemandSubscription<>(this.elements, subscriber));
+    }
+
+    private static final class DemandSubscription<T> implements Flow.Subscription
+    {
+        private final Spliterator<? extends T> elements;
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Consumer1<T> onNext;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger drainRequests = new AtomicInteger();
+        private volatile boolean isCancelled = false;
+        private volatile Throwable invalidRequest = null;
+
+        DemandSubscription(Spliterator<? extends T> elements, Flow.Subscriber<? super T> subscriber)
+        {
+            this.elements = elements;
+            this.subscriber = subscriber;
+            this.onNext = subscriber::onNext;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                this.invalidRequest = new IllegalArgumentException("request must be positive: " + n);
+            }
+            else
+            {
+                // Saturates at Long.MAX_VALUE, which means unbounded.
+                this.demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+
+            this.drain();
+        }
+
+        @Override
+        public void cancel()
+        {
+            this.isCancelled = true;
+            this.drain(); // Lets the drain loop tell the pipeline, on the one thread that pulls from it.
+        }
+
+        private void drain()
+        {
+            if (this.drainRequests.getAndIncrement() != 0)
+            {
+                return;
+            }
+
+            int missed = 1;
+
+            do
+            {
+                long requested = this.demand.get();
+                long emitted = 0;
+
+                while (!this.isCancelled)
+                {
+                    if (this.invalidRequest != null)
+                    {
+                        this.isCancelled = true;
+                        this.subscriber.onError(this.invalidRequest);
+                        return;
+                    }
+
+                    if (emitted == requested)
+                    {
+                        break;
+                    }
+
+                    boolean didAdvance;
+
+                    try
+                    {
+                        didAdvance = this.elements.tryAdvance(this.onNext);
+                    }
+                    catch (Throwable t)
+                    {
+                        this.isCancelled = true;
+                        this.subscriber.onError(t);
+                        return;
+                    }
+
+                    if (!didAdvance)
+                    {
+                        this.isCancelled = true;
+                        this.subscriber.onComplete();
+                        return;
+                    }
+
+                    ++emitted;
+                }
+
+                if (this.isCancelled)
+                {
+                    // Cancelled by the subscriber (the other ways out return above). The loop is never released, so
+                    // this runs once.
+                    this.elements.cancel();
+                    return;
+                }
+
+                if (emitted > 0 && requested != Long.MAX_VALUE)
+                {
+                    this.demand.addAndGet(-emitted);
+                }
+
+                missed = this.drainRequests.addAndGet(-missed);
+            }
+            while (missed != 0);
+        }
+    }
+}
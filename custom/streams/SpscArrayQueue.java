@@ -0,0 +1,61 @@
+package custom.streams;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded lock-free queue for exactly one producer thread and one consumer thread at a time. A slot is free while
+// it holds null, so each side only has to look at its own index and the slot it points at.
+final class SpscArrayQueue<E>
+{
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    SpscArrayQueue(int capacity)
+    {
+        int roundedCapacity = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(1, capacity) - 1));
+        this.slots = new AtomicReferenceArray<>(roundedCapacity);
+        this.mask = roundedCapacity - 1;
+    }
+
+    // Returns false if the queue is full.
+    boolean offer(E element)
+    {
+        long index = this.producerIndex.get();
+        int slot = (int) index & this.mask;
+
+        if (this.slots.get(slot) != null)
+        {
+            return false;
+        }
+
+        // A full (volatile) store, not lazySet: a producer that next reads a volatile flag (e.g. whether the consumer
+        // is parked) must not have that read reordered before the element is visible to the consumer.
+        this.slots.set(slot, element);
+        this.producerIndex.lazySet(index + 1);
+        return true;
+    }
+
+    // Returns null if the queue is empty.
+    E poll()
+    {
+        long index = this.consumerIndex.get();
+        int slot = (int) index & this.mask;
+        E element = this.slots.get(slot);
+
+        if (element == null)
+        {
+            return null;
+        }
+
+        this.slots.lazySet(slot, null);
+        this.consumerIndex.lazySet(index + 1);
+        return element;
+    }
+
+    boolean isEmpty()
+    {
+        return this.slots.get((int) this.consumerIndex.get() & this.mask) == null;
+    }
+}
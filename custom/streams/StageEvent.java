@@ -0,0 +1,34 @@
+package custom.streams;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Committed once per evaluation (or split, in parallel) of an instrumented stage, when a JFR recording has the event
+// enabled. Its duration covers the whole evaluation; stageNanos is the part spent in the stage itself.
+@Name("custom.streams.Stage")
+@Label("Stream Stage")
+@Category("custom.streams")
+@Description("Totals for one run of an instrumented stream stage")
+final class StageEvent extends jdk.jfr.Event
+{
+    @Label("Stage")
+    String stage;
+
+    @Label("Elements In")
+    long elementsIn;
+
+    @Label("Elements Out")
+    long elementsOut;
+
+    @Label("Stage Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long stageNanos;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    long allocatedBytes;
+}
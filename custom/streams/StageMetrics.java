@@ -0,0 +1,102 @@
+package custom.streams;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Running totals for one instrumented stage (see Stream2.instrument), summed over every evaluation and every split.
+public final class StageMetrics
+{
+    private final String name;
+    final LongAdder elementsIn = new LongAdder();
+    final LongAdder elementsOut = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAdder allocatedBytes = new LongAdder();
+
+    StageMetrics(String name)
+    {
+        this.name = name;
+    }
+
+    public String name()
+    {
+        return this.name;
+    }
+
+    public Snapshot snapshot()
+    {
+        return new Snapshot(
+                this.name,
+                this.elementsIn.sum(),
+                this.elementsOut.sum(),
+                this.nanos.sum(),
+                this.allocatedBytes.sum());
+    }
+
+    void reset()
+    {
+        this.elementsIn.reset();
+        this.elementsOut.reset();
+        this.nanos.reset();
+        this.allocatedBytes.reset();
+    }
+
+    // Point-in-time copy of the totals. Nanoseconds and bytes are the stage's own (excluding the stages after it)
+    // when it ran in push mode; in pull mode (parallel) they include the stages before it, and elements in aren't
+    // counted.
+    public static final class Snapshot
+    {
+        private final String name;
+        private final long elementsIn;
+        private final long elementsOut;
+        private final long nanos;
+        private final long allocatedBytes;
+
+        Snapshot(String name, long elementsIn, long elementsOut, long nanos, long allocatedBytes)
+        {
+            this.name = name;
+            this.elementsIn = elementsIn;
+            this.elementsOut = elementsOut;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String name()
+        {
+            return this.name;
+        }
+
+        public long elementsIn()
+        {
+            return this.elementsIn;
+        }
+
+        public long elementsOut()
+        {
+            return this.elementsOut;
+        }
+
+        // Elements out per element in (below 1 for filters, above for flatMaps); NaN if nothing came in.
+        public double selectivity()
+        {
+            return this.elementsIn == 0 ? Double.NaN : (double) this.elementsOut / this.elementsIn;
+        }
+
+        public long nanos()
+        {
+            return this.nanos;
+        }
+
+        // -1 if the JVM can't measure per-thread allocation.
+        public long allocatedBytes()
+        {
+            return Instrumentation.canMeasureAllocation() ? this.allocatedBytes : -1;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.name + ": in " + this.elementsIn + ", out " + this.elementsOut
+                    + ", selectivity " + this.selectivity() + ", " + this.nanos + " ns, "
+                    + this.allocatedBytes() + " bytes allocated";
+        }
+    }
+}
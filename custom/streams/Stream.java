@@ -1,10 +1,17 @@
 package custom.streams;
 
+import java.util.AbstractList;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Set;
 
 public class Stream<T>
 {
@@ -47,32 +54,548 @@ public class Stream<T>
 
     public static <U> Iterator<U> toIter(java.lang.Iterable<U> iter)
     {
+        if (iter instanceof List && iter instanceof RandomAccess)
+        {
+            return listIterator((List<U>) iter);
+        }
+
         return adaptIterator(iter.iterator());
     }
 
+    // Reads a random-access list by index: no JDK iterator behind an adapter, and no per-call modCount checks.
+    private static <U> Iterator<U> listIterator(List<? extends U> list)
+    {
+        return new Iterator<U>() {
+            private final int size = list.size();
+            private int index = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.index < this.size;
+            }
+
+            @Override
+            public U next()
+            {
+                if (this.index >= this.size)
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return list.get(this.index++);
+            }
+
+            @Override
+            public int nextBatch(Object[] batch, int max)
+            {
+                int count = Math.min(max, this.size - this.index);
+
+                for (int i = 0; i < count; ++i)
+                {
+                    batch[i] = list.get(this.index + i);
+                }
+
+                this.index += count;
+                return count;
+            }
+        };
+    }
+
+    private static <U> Iterator<U> arrayIterator(U[] array, int fromIndex, int toIndex)
+    {
+        return new Iterator<U>() {
+            private int index = fromIndex;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.index < toIndex;
+            }
+
+            @Override
+            public U next()
+            {
+                if (this.index >= toIndex)
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return array[this.index++];
+            }
+
+            @Override
+            public int nextBatch(Object[] batch, int max)
+            {
+                int count = Math.min(max, toIndex - this.index);
+                System.arraycopy(array, this.index, batch, 0, count);
+                this.index += count;
+                return count;
+            }
+        };
+    }
+
+    // The ints of a range as a list, so a range source gets the same by-index slicing as any random-access list.
+    private static final class RangeList extends AbstractList<Integer> implements RandomAccess
+    {
+        private final int start;
+        private final int size;
+
+        RangeList(int start, int size)
+        {
+            this.start = start;
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index)
+        {
+            if (index < 0 || index >= this.size)
+            {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.size);
+            }
+
+            return this.start + index;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+    }
+
 
     // BEGIN
 
+    // Elements per nextBatch pull in the bulk terminals.
+    private static final int BATCH_SIZE = 256;
+
     final Iterator<? extends T> elements;
 
+    // Spliterator characteristic bits (SIZED, SORTED, DISTINCT, ORDERED) known to hold for this stream's elements,
+    // and the exact element count when SIZED (-1 otherwise).
+    final int flags;
+    final long size;
+
+    // Only set on a stream created directly from a RandomAccess list, array or range, so take/drop can slice it by index.
+    private final List<? extends T> sourceList;
+
     private Stream(Iterator<? extends T> elements)
+    {
+        this(elements, 0, -1);
+    }
+
+    private Stream(Iterator<? extends T> elements, int flags, long size)
+    {
+        this(elements, flags, size, null);
+    }
+
+    private Stream(Iterator<? extends T> elements, int flags, long size, List<? extends T> sourceList)
     {
         this.elements = elements;
+        this.flags = flags;
+        this.size = (flags & Spliterator.SIZED) != 0 ? size : -1;
+        this.sourceList = sourceList;
     }
 
     public static <U> Stream<U> of(Iterator<? extends U> elements)
     {
-        return new Stream<>(elements);
+        return new Stream<>(elements, Spliterator.ORDERED, -1);
     }
 
     public static <U> Stream<U> of(Iterable<? extends U> elements)
     {
-        return new Stream<>(toIter(elements));
+        if (elements instanceof List && elements instanceof RandomAccess)
+        {
+            // A list is ordered and sized, and that is all its spliterator would report, so don't create one.
+            List<? extends U> list = (List<? extends U>) elements;
+            return new Stream<>(listIterator(list), Spliterator.ORDERED | Spliterator.SIZED, list.size(), list);
+        }
+
+        // Collections report what they know about their elements through their spliterator.
+        java.util.Spliterator<? extends U> spliterator = elements.spliterator();
+        int flags = spliterator.characteristics()
+                & (Spliterator.SIZED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.ORDERED);
+
+        return new Stream<>(toIter(elements), flags, spliterator.estimateSize());
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static <U> Stream<U> of(U... elements)
+    {
+        return of(elements, 0, elements.length);
+    }
+
+    // The elements of array[fromIndex, toIndex), read in place.
+    public static <U> Stream<U> of(U[] elements, int fromIndex, int toIndex)
+    {
+        List<U> list = Arrays.asList(elements).subList(fromIndex, toIndex);
+        return new Stream<>(arrayIterator(elements, fromIndex, toIndex), Spliterator.ORDERED | Spliterator.SIZED, list.size(), list);
+    }
+
+    // The ints in [startInclusive, endExclusive), in order.
+    public static Stream<Integer> range(int startInclusive, int endExclusive)
+    {
+        int flags = Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SORTED | Spliterator.DISTINCT;
+        long size = Math.max(0L, (long) endExclusive - startInclusive);
+
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Range too large: [" + startInclusive + ", " + endExclusive + ")");
+        }
+
+        List<Integer> list = new RangeList(startInclusive, (int) size);
+        return new Stream<>(listIterator(list), flags, size, list);
     }
 
     public <U> Stream<U> map(Function1<? super T, ? extends U> mapper)
+    {
+        if (this.elements instanceof MapIterator)
+        {
+            // map(f).map(g) runs as map(g after f): one stage instead of two.
+            return ((MapIterator<?, ? extends T>) this.elements).fuse(mapper);
+        }
+
+        return new Stream<>(new MapIterator<>(this, mapper), this.flags & ~(Spliterator.SORTED | Spliterator.DISTINCT), this.size);
+    }
+
+    // The stage iterators below keep the stream they were built on, which makes the chain of stages a plan the
+    // next stage can rewrite before anything runs: merging adjacent maps, adjacent filters and adjacent take/drop
+    // limits, and moving take/drop ahead of a map (which then isn't applied to dropped elements, and lets a
+    // random-access source slice by index).
+    private static final class MapIterator<T, U> implements Iterator<U>
+    {
+        private final Stream<T> upstream;
+        private final Iterator<? extends T> elements;
+        private final Function1<? super T, ? extends U> mapper;
+
+        MapIterator(Stream<T> upstream, Function1<? super T, ? extends U> mapper)
+        {
+            this.upstream = upstream;
+            this.elements = upstream.elements;
+            this.mapper = mapper;
+        }
+
+        <V> Stream<V> fuse(Function1<? super U, ? extends V> nextMapper)
+        {
+            Function1<? super T, ? extends U> mapper = this.mapper;
+            return this.upstream.map(input -> nextMapper.apply(mapper.apply(input)));
+        }
+
+        // take and drop commute with a map; upstream of it they skip the mapper for dropped elements.
+        Stream<U> take(long count)
+        {
+            return this.upstream.take(count).map(this.mapper);
+        }
+
+        Stream<U> drop(long count)
+        {
+            return this.upstream.drop(count).map(this.mapper);
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.elements.hasNext();
+        }
+
+        @Override
+        public U next()
+        {
+            return this.mapper.apply(this.elements.next());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int nextBatch(Object[] batch, int max)
+        {
+            int count = this.elements.nextBatch(batch, max);
+
+            for (int i = 0; i < count; ++i)
+            {
+                batch[i] = this.mapper.apply((T) batch[i]);
+            }
+
+            return count;
+        }
+    }
+
+    public <U> Stream<U> flatMap(Function1<? super T, ? extends Stream<? extends U>> flatMapper)
     {
         Iterator<U> newIterator = new Iterator<U>() {
+            private Iterator<? extends U> currentIterator = emptyIterator();
+
+            @Override
+            public boolean hasNext()
+            {
+                // Loop (rather than recurse) past empty inner streams, so long runs of them can't exhaust the stack.
+                while (!this.currentIterator.hasNext())
+                {
+                    if (!elements.hasNext())
+                    {
+                        return false;
+                    }
+
+                    this.currentIterator = flatMapper.apply(elements.next()).elements;
+                }
+
+                return true;
+            }
+
+            @Override
+            public U next()
+            {
+                this.hasNext(); // Executing for side-effects!
+
+                return this.currentIterator.next();
+            }
+
+            @Override
+            public int nextBatch(Object[] batch, int max)
+            {
+                // hasNext() moves on to the next non-empty inner stream, which then fills the batch.
+                return this.hasNext() ? this.currentIterator.nextBatch(batch, max) : 0;
+            }
+        };
+
+        return new Stream<>(newIterator, this.flags & Spliterator.ORDERED, -1);
+    }
+
+    // Like flatMap, but the mapper pushes each sub-element to the given consumer, so no intermediate Stream (or
+    // iterator) is created per upstream element. Sub-elements wait in a reused buffer until pulled.
+    public <U> Stream<U> mapMulti(Consumer2<? super T, ? super Consumer1<U>> mapper)
+    {
+        Iterator<U> newIterator = new Iterator<U>() {
+            private final List<U> buffer = new ArrayList<>();
+            private final Consumer1<U> bufferAppender = this.buffer::add;
+            private int bufferIndex = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (this.bufferIndex == this.buffer.size())
+                {
+                    this.buffer.clear();
+                    this.bufferIndex = 0;
+
+                    if (!elements.hasNext())
+                    {
+                        return false;
+                    }
+
+                    mapper.accept(elements.next(), this.bufferAppender);
+                }
+
+                return true;
+            }
+
+            @Override
+            public U next()
+            {
+                if (!this.hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return this.buffer.get(this.bufferIndex++);
+            }
+
+            @Override
+            public int nextBatch(Object[] batch, int max)
+            {
+                if (!this.hasNext())
+                {
+                    return 0;
+                }
+
+                int count = Math.min(max, this.buffer.size() - this.bufferIndex);
+
+                for (int i = 0; i < count; ++i)
+                {
+                    batch[i] = this.buffer.get(this.bufferIndex + i);
+                }
+
+                this.bufferIndex += count;
+                return count;
+            }
+        };
+
+        return new Stream<>(newIterator, this.flags & Spliterator.ORDERED, -1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Stream<T> filter(Predicate<? super T> predicate)
+    {
+        if (this.elements instanceof FilterIterator)
+        {
+            // filter(p).filter(q) runs as filter(p && q): one stage instead of two.
+            FilterIterator<T> previous = (FilterIterator<T>) this.elements;
+            return previous.upstream.filter(input -> previous.predicate.test(input) && predicate.test(input));
+        }
+
+        return new Stream<>(new FilterIterator<>(this, predicate), this.flags & ~Spliterator.SIZED, -1);
+    }
+
+    private static final class FilterIterator<T> implements Iterator<T>
+    {
+        private final Stream<T> upstream;
+        private final Iterator<? extends T> elements;
+        private final Predicate<? super T> predicate;
+        private T nextElement = null;
+        private boolean nextElementIsPresent = false;
+
+        FilterIterator(Stream<T> upstream, Predicate<? super T> predicate)
+        {
+            this.upstream = upstream;
+            this.elements = upstream.elements;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+//            if (this.nextElementIsPresent)
+//            {
+//                return true;
+//            }
+//
+//            if (!this.elements.hasNext())
+//            {
+//                return false;
+//            }
+//
+//            this.nextElement = this.elements.next();
+//
+//            if (this.predicate.test(this.nextElement))
+//            {
+//                this.nextElementIsPresent = true;
+//            }
+//
+//            return this.hasNext();
+
+            // — OR —
+
+            if (this.nextElementIsPresent)
+            {
+                return true;
+            }
+
+            do
+            {
+                if (!this.elements.hasNext())
+                {
+                    return false;
+                }
+
+                this.nextElement = this.elements.next();
+            }
+            while (!this.predicate.test(this.nextElement));
+
+            this.nextElementIsPresent = true;
+            return true;
+        }
+
+        @Override
+        public T next()
+        {
+            this.hasNext(); // Executing for side-effects!
+
+            if (!this.nextElementIsPresent)
+            {
+                throw new NoSuchElementException(); // Maybe something else
+            }
+
+            this.nextElementIsPresent = false;
+
+            return this.nextElement;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int nextBatch(Object[] batch, int max)
+        {
+            if (this.nextElementIsPresent)
+            {
+                // Left over from a hasNext() call.
+                batch[0] = this.nextElement;
+                this.nextElementIsPresent = false;
+                return 1;
+            }
+
+            int count;
+
+            do
+            {
+                int pulled = this.elements.nextBatch(batch, max);
+
+                if (pulled == 0)
+                {
+                    return 0;
+                }
+
+                // Compact the kept elements to the front, in place.
+                count = 0;
+
+                for (int i = 0; i < pulled; ++i)
+                {
+                    T element = (T) batch[i];
+
+                    if (this.predicate.test(element))
+                    {
+                        batch[count++] = element;
+                    }
+                }
+            }
+            while (count == 0);
+
+            return count;
+        }
+    }
+
+    public boolean anyMatch(Predicate<? super T> predicate)
+    {
+        while (elements.hasNext())
+        {
+            if (predicate.test(elements.next()))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean allMatch(Predicate<? super T> predicate)
+    {
+        while (elements.hasNext())
+        {
+            if (!predicate.test(elements.next()))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public Optional<T> findFirst()
+    {
+        if (elements.hasNext())
+        {
+            return Optional.of(elements.next());
+        }
+
+        return Optional.empty();
+    }
+
+    // Maps each element together with its position, without boxing the index or allocating a pair.
+    public <U> Stream<U> mapIndexed(LongObjFunction2<? super T, ? extends U> mapper)
+    {
+        Iterator<U> newIterator = new Iterator<U>() {
+            private long nextIndex = 0;
+
             @Override
             public boolean hasNext()
             {
@@ -82,186 +605,349 @@ public class Stream<T>
             @Override
             public U next()
             {
-                return mapper.apply(elements.next());
+                return mapper.apply(this.nextIndex++, elements.next());
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public int nextBatch(Object[] batch, int max)
+            {
+                int count = elements.nextBatch(batch, max);
+
+                for (int i = 0; i < count; ++i)
+                {
+                    batch[i] = mapper.apply(this.nextIndex++, (T) batch[i]);
+                }
+
+                return count;
+            }
+        };
+
+        return new Stream<>(newIterator, this.flags & ~(Spliterator.SORTED | Spliterator.DISTINCT), this.size);
+    }
+
+    public Stream<Indexed<T>> zipWithIndex()
+    {
+        return this.mapIndexed(Indexed::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachIndexed(LongObjConsumer2<? super T> consumer)
+    {
+        Object[] batch = new Object[BATCH_SIZE];
+        long index = 0;
+
+        for (int count; (count = elements.nextBatch(batch, BATCH_SIZE)) > 0; )
+        {
+            for (int i = 0; i < count; ++i)
+            {
+                consumer.accept(index++, (T) batch[i]);
             }
+        }
+    }
+
+    // Pairs elements by position, ending with the shorter stream.
+    public <U, R> Stream<R> zip(Stream<? extends U> other, Function2<? super T, ? super U, ? extends R> zipper)
+    {
+        Iterator<R> newIterator = new Iterator<R>() {
+            @Override
+            public boolean hasNext()
+            {
+                return elements.hasNext() && other.elements.hasNext();
+            }
+
+            @Override
+            public R next()
+            {
+                return zipper.apply(elements.next(), other.elements.next());
+            }
+
+            // No batched nextBatch: pulling a batch from this side ahead of the other would run its stages (and wait on
+            // a slow or blocking source) for elements that may have no partner. The default pulls pair by pair.
         };
 
-        return new Stream<>(newIterator);
+        int flags = this.flags & other.flags & (Spliterator.ORDERED | Spliterator.SIZED);
+        return new Stream<>(newIterator, flags, Math.min(this.size, other.size));
+    }
+
+    public <U> Stream<Map.Entry<T, U>> zip(Stream<? extends U> other)
+    {
+        return this.zip(other, AbstractMap.SimpleImmutableEntry::new);
+    }
+
+    // Consecutive groups of 'size' elements, each in its own list; the last group may be shorter.
+    public Stream<List<T>> grouped(int size)
+    {
+        return this.windows(new Windower<>(size, size, true, false), this.size < 0 ? -1 : (this.size + size - 1) / size);
+    }
+
+    // Like grouped, but every group is the same reused, read-only list, valid only until the next group is requested.
+    // For handing batches to a consumer (e.g. a bulk write) that doesn't keep them.
+    public Stream<List<T>> batched(int size)
+    {
+        return this.windows(new Windower<>(size, size, true, true), this.size < 0 ? -1 : (this.size + size - 1) / size);
+    }
+
+    // Full windows of 'size' elements, starting every 'step' elements.
+    public Stream<List<T>> windowed(int size, int step)
+    {
+        return this.windowed(size, step, false);
+    }
+
+    // With 'reuse', every window is the same read-only view of one ring buffer, valid only until the next window is
+    // requested, so no list is allocated per window.
+    public Stream<List<T>> windowed(int size, int step, boolean reuse)
+    {
+        Windower<T> windower = new Windower<>(size, step, false, reuse);
+        long windowCount = this.size < size ? 0 : (this.size - size) / step + 1;
+        return this.windows(windower, this.size < 0 ? -1 : windowCount);
+    }
+
+    public Stream<List<T>> sliding(int size)
+    {
+        return this.windowed(size, 1, false);
     }
 
-    public <U> Stream<U> flatMap(Function1<? super T, ? extends Stream<? extends U>> flatMapper)
+    private Stream<List<T>> windows(Windower<T> windower, long windowCount)
     {
-        Iterator<U> newIterator = new Iterator<U>() {
-            private Iterator<? extends U> currentIterator = emptyIterator();
+        Iterator<List<T>> newIterator = new Iterator<List<T>>() {
+            private List<T> nextWindow = null;
 
             @Override
             public boolean hasNext()
             {
-                if (this.currentIterator.hasNext())
+                while (this.nextWindow == null && elements.hasNext())
                 {
-                    return true;
+                    this.nextWindow = windower.push(elements.next());
                 }
 
-                if (!elements.hasNext())
+                if (this.nextWindow == null)
                 {
-                    return false;
+                    this.nextWindow = windower.flush();
                 }
 
-                this.currentIterator = flatMapper.apply(elements.next()).elements;
+                return this.nextWindow != null;
+            }
+
+            @Override
+            public List<T> next()
+            {
+                if (!this.hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
 
-                return this.hasNext();
+                List<T> window = this.nextWindow;
+                this.nextWindow = null;
+                return window;
             }
 
             @Override
-            public U next()
+            public int nextBatch(Object[] batch, int max)
             {
-                this.hasNext(); // Executing for side-effects!
+                // A reused window is only valid until the next one is requested, so those go one per batch.
+                int limit = windower.isReusing() ? 1 : max;
+                int count = 0;
 
-                return this.currentIterator.next();
+                while (count < limit && this.hasNext())
+                {
+                    batch[count++] = this.next();
+                }
+
+                return count;
             }
         };
 
-        return new Stream<>(newIterator);
+        return new Stream<>(newIterator, this.flags & (Spliterator.ORDERED | Spliterator.SIZED), windowCount);
     }
 
-    public Stream<T> filter(Predicate<? super T> predicate)
+    // Sorts by natural order; the elements must be Comparable.
+    @SuppressWarnings("unchecked")
+    public Stream<T> sorted()
     {
-        Iterator<T> newIterator = new Iterator<T>() {
-            private T nextElement = null;
-            private boolean nextElementIsPresent = false;
+        return this.sorted((Comparator<? super T>) Comparator.naturalOrder());
+    }
 
-            @Override
-            public boolean hasNext()
-            {
-//                if (this.nextElementIsPresent)
-//                {
-//                    return true;
-//                }
-//
-//                if (!elements.hasNext())
-//                {
-//                    return false;
-//                }
-//
-//                this.nextElement = elements.next();
-//
-//                if (predicate.test(this.nextElement))
-//                {
-//                    this.nextElementIsPresent = true;
-//                }
-//
-//                return this.hasNext();
+    // A stable merge sort of all elements, on the first hasNext. Followed directly by take(k), the two run as a
+    // top-K selection instead: O(n log k) time and O(k) memory.
+    public Stream<T> sorted(Comparator<? super T> comparator)
+    {
+        SortedIterator<T> newIterator = new SortedIterator<>(this.elements, this.size, comparator, -1);
+        return new Stream<>(newIterator, this.flags | Spliterator.SORTED | Spliterator.ORDERED, this.size);
+    }
 
-                // — OR —
+    // Drops elements equal to an earlier one, using their hashCode/equals. A no-op on a DISTINCT stream.
+    public Stream<T> distinct()
+    {
+        if ((this.flags & Spliterator.DISTINCT) != 0)
+        {
+            return this;
+        }
 
-                if (this.nextElementIsPresent)
-                {
-                    return true;
-                }
+        Set<T> seen = new HashSet<>();
+        Stream<T> newStream = this.filter(seen::add);
+        return new Stream<>(newStream.elements, newStream.flags | Spliterator.DISTINCT, -1);
+    }
 
-                do
-                {
-                    if (!elements.hasNext())
-                    {
-                        return false;
-                    }
+    private static final class SortedIterator<T> implements Iterator<T>
+    {
+        private final Iterator<? extends T> upstream;
+        private final long upstreamSize;
+        private final Comparator<? super T> comparator;
+        private final int k; // -1 to sort everything
 
-                    this.nextElement = elements.next();
-                }
-                while (!predicate.test(this.nextElement));
+        private Object[] sorted = null;
+        private int index = 0;
 
-                this.nextElementIsPresent = true;
-                return true;
-            }
+        SortedIterator(Iterator<? extends T> upstream, long upstreamSize, Comparator<? super T> comparator, int k)
+        {
+            this.upstream = upstream;
+            this.upstreamSize = upstreamSize;
+            this.comparator = comparator;
+            this.k = k;
+        }
 
-            @Override
-            public T next()
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext()
+        {
+            if (this.sorted == null)
             {
-                this.hasNext(); // Executing for side-effects!
-
-                if (!this.nextElementIsPresent)
+                if (this.k >= 0)
                 {
-                    throw new NoSuchElementException(); // Maybe something else
+                    TopK<T> topK = new TopK<>(this.k, this.comparator);
+
+                    forEachRemaining(this.upstream, topK::add);
+
+                    this.sorted = topK.toSortedArray();
                 }
+                else
+                {
+                    SpinedBuffer<T> buffer = new SpinedBuffer<>();
+                    buffer.presize(this.upstreamSize);
 
-                this.nextElementIsPresent = false;
+                    forEachRemaining(this.upstream, buffer::add);
 
-                return this.nextElement;
+                    this.sorted = buffer.toArray();
+                    Arrays.sort((T[]) this.sorted, this.comparator);
+                }
             }
-        };
 
-        return new Stream<>(newIterator);
-    }
+            return this.index < this.sorted.length;
+        }
 
-    public boolean anyMatch(Predicate<? super T> predicate)
-    {
-        while (elements.hasNext())
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next()
         {
-            if (predicate.test(elements.next()))
+            if (!this.hasNext())
             {
-                return true;
+                throw new NoSuchElementException();
             }
-        }
 
-        return false;
-    }
+            T element = (T) this.sorted[this.index];
+            this.sorted[this.index++] = null;
+            return element;
+        }
 
-    public boolean allMatch(Predicate<? super T> predicate)
-    {
-        while (elements.hasNext())
+        @Override
+        public int nextBatch(Object[] batch, int max)
         {
-            if (!predicate.test(elements.next()))
+            if (!this.hasNext())
             {
-                return false;
+                return 0;
             }
-        }
 
-        return true;
+            int count = Math.min(max, this.sorted.length - this.index);
+            System.arraycopy(this.sorted, this.index, batch, 0, count);
+            Arrays.fill(this.sorted, this.index, this.index + count, null);
+            this.index += count;
+            return count;
+        }
     }
 
-    public Optional<T> findFirst()
+    @SuppressWarnings("unchecked")
+    public Stream<T> take(long count) // limit
     {
-        if (elements.hasNext())
+        if (this.elements instanceof SortedIterator
+                && ((SortedIterator<T>) this.elements).sorted == null
+                && ((SortedIterator<T>) this.elements).k < 0
+                && count >= 0 && count < Integer.MAX_VALUE - 8)
         {
-            return Optional.of(elements.next());
+            // sorted(comparator).take(k): select the top k from the sort's upstream instead of sorting everything.
+            SortedIterator<T> sort = (SortedIterator<T>) this.elements;
+            SortedIterator<T> newIterator = new SortedIterator<>(sort.upstream, sort.upstreamSize, sort.comparator, (int) count);
+            return new Stream<>(newIterator, this.flags, this.size < 0 ? -1 : Math.min(this.size, count));
         }
 
-        return Optional.empty();
-    }
+        if (this.size >= 0 && count >= this.size)
+        {
+            return this; // Takes everything anyway.
+        }
 
-//    public Tuple2Stream<T, Integer> zipWithIndex()
-//    {
-//
-//    }
-//
-//    //zip
-//
-//    public Stream<List<T>> grouped(int size)
-//    {
-//
-//    }
+        if (this.sourceList != null)
+        {
+            // Slice a random-access source by index instead of counting elements through a stage.
+            return this.slice(0, (int) Math.max(Math.min(count, this.size), 0));
+        }
 
-    public Stream<T> take(long count) // limit
+        if (this.elements instanceof MapIterator)
+        {
+            return ((MapIterator<Object, T>) this.elements).take(count);
+        }
+
+        if (this.elements instanceof TakeIterator)
+        {
+            TakeIterator<T> previous = (TakeIterator<T>) this.elements;
+            return previous.upstream.take(Math.min(previous.count, count));
+        }
+
+        return new Stream<>(new TakeIterator<>(this, count), this.flags, this.size < 0 ? -1 : Math.min(this.size, count));
+    }
+
+    private static final class TakeIterator<T> implements Iterator<T>
     {
-        Iterator<T> newIterator = new Iterator<T>() {
-            private long takenSoFar = 0;
+        private final Stream<T> upstream;
+        private final Iterator<? extends T> elements;
+        private final long count;
+        private long takenSoFar = 0;
 
-            @Override
-            public boolean hasNext()
-            {
-                return elements.hasNext() && this.takenSoFar < count;
-            }
+        TakeIterator(Stream<T> upstream, long count)
+        {
+            this.upstream = upstream;
+            this.elements = upstream.elements;
+            this.count = count;
+        }
 
-            @Override
-            public T next()
+        @Override
+        public boolean hasNext()
+        {
+            return this.takenSoFar < this.count && this.elements.hasNext();
+        }
+
+        @Override
+        public T next()
+        {
+            T element = this.elements.next();
+            ++this.takenSoFar;
+            return element;
+        }
+
+        @Override
+        public int nextBatch(Object[] batch, int max)
+        {
+            long remaining = this.count - this.takenSoFar;
+
+            if (remaining <= 0)
             {
-                T element = elements.next();
-                ++this.takenSoFar;
-                return element;
+                return 0;
             }
-        };
 
-        return Stream.of(newIterator);
+            // Never asks for more than the limit, so the upstream isn't pulled past it.
+            int count = this.elements.nextBatch(batch, (int) Math.min(max, remaining));
+            this.takenSoFar += count;
+            return count;
+        }
     }
 
     public Stream<T> takeWhile(Predicate<? super T> predicate)
@@ -306,38 +992,102 @@ public class Stream<T>
 
                 return this.nextElement;
             }
+
+            // No batched nextBatch: a batch pulled from upstream could run past the first element that fails the
+            // predicate, consuming elements the stream never passes on. The default pulls element by element.
         };
 
-        return Stream.of(newIterator);
+        return new Stream<>(newIterator, this.flags & ~Spliterator.SIZED, -1);
+    }
+
+    // A by-index slice of the source list, which keeps what is known about the elements.
+    private Stream<T> slice(int fromIndex, int toIndex)
+    {
+        List<? extends T> list = this.sourceList.subList(fromIndex, toIndex);
+        return new Stream<>(listIterator(list), this.flags, list.size(), list);
     }
 
+    @SuppressWarnings("unchecked")
     public Stream<T> drop(long count)
     {
-        Iterator<T> newIterator = new Iterator<T>() {
-            private long droppedSoFar = 0;
+        if (count <= 0)
+        {
+            return this;
+        }
 
-            @Override
-            public boolean hasNext()
-            {
-                while (droppedSoFar < count && elements.hasNext())
-                {
-                    ++this.droppedSoFar;
-                    elements.next();
-                }
+        if (this.sourceList != null)
+        {
+            // Skip ahead in a random-access source by index instead of dropping elements one by one.
+            return this.slice((int) Math.min(count, this.size), (int) this.size);
+        }
 
-                return elements.hasNext();
+        if (this.elements instanceof MapIterator)
+        {
+            return ((MapIterator<Object, T>) this.elements).drop(count);
+        }
+
+        if (this.elements instanceof DropIterator)
+        {
+            DropIterator<T> previous = (DropIterator<T>) this.elements;
+            long total = previous.count + count;
+            return previous.upstream.drop(total < 0 ? Long.MAX_VALUE : total);
+        }
+
+        return new Stream<>(new DropIterator<>(this, count), this.flags, this.size < 0 ? -1 : Math.max(0, this.size - count));
+    }
+
+    private static final class DropIterator<T> implements Iterator<T>
+    {
+        private final Stream<T> upstream;
+        private final Iterator<? extends T> elements;
+        private final long count;
+        private long droppedSoFar = 0;
+
+        DropIterator(Stream<T> upstream, long count)
+        {
+            this.upstream = upstream;
+            this.elements = upstream.elements;
+            this.count = count;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (this.droppedSoFar < this.count && this.elements.hasNext())
+            {
+                ++this.droppedSoFar;
+                this.elements.next();
             }
 
-            @Override
-            public T next()
+            return this.elements.hasNext();
+        }
+
+        @Override
+        public T next()
+        {
+            this.hasNext(); // Executing for side-effects!
+
+            return this.elements.next();
+        }
+
+        @Override
+        public int nextBatch(Object[] batch, int max)
+        {
+            // Drop in batches too, using the caller's array as scratch space.
+            while (this.droppedSoFar < this.count)
             {
-                this.hasNext(); // Executing for side-effects!
+                int dropped = this.elements.nextBatch(batch, (int) Math.min(max, this.count - this.droppedSoFar));
+
+                if (dropped == 0)
+                {
+                    return 0;
+                }
 
-                return elements.next();
+                this.droppedSoFar += dropped;
             }
-        };
 
-        return Stream.of(newIterator);
+            return this.elements.nextBatch(batch, max);
+        }
     }
 
     public Stream<T> dropWhile(Predicate<? super T> predicate)
@@ -389,34 +1139,146 @@ public class Stream<T>
 
                 return this.nextElement;
             }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public int nextBatch(Object[] batch, int max)
+            {
+                if (this.nextElementIsPresent)
+                {
+                    // Left over from a hasNext() call.
+                    batch[0] = this.nextElement;
+                    this.nextElementIsPresent = false;
+                    return 1;
+                }
+
+                while (this.isDropping)
+                {
+                    int pulled = elements.nextBatch(batch, max);
+
+                    if (pulled == 0)
+                    {
+                        return 0;
+                    }
+
+                    for (int i = 0; i < pulled; ++i)
+                    {
+                        if (!predicate.test((T) batch[i]))
+                        {
+                            // Hand on the first kept element and everything after it.
+                            this.isDropping = false;
+                            System.arraycopy(batch, i, batch, 0, pulled - i);
+                            return pulled - i;
+                        }
+                    }
+                }
+
+                return elements.nextBatch(batch, max);
+            }
         };
 
-        return Stream.of(newIterator);
+        return new Stream<>(newIterator, this.flags & ~Spliterator.SIZED, -1);
     }
 
-    public List<T> collect()
+    // Turns this single-shot pipeline into a replayable one: each StreamCache.stream() call starts a new cursor,
+    // and the pipeline itself runs at most once, as far as the furthest cursor gets.
+    public StreamCache<T> cache()
     {
-        List<T> result = new ArrayList<>();
+        return this.cache(Long.MAX_VALUE);
+    }
 
-        while (elements.hasNext())
+    // Like cache(), but keeps only about the last maxRetained elements.
+    public StreamCache<T> cache(long maxRetained)
+    {
+        Spliterator<T> source = new Spliterator<T>() {
+            @Override
+            public boolean tryAdvance(Consumer1<? super T> consumer)
+            {
+                if (!elements.hasNext())
+                {
+                    return false;
+                }
+
+                consumer.accept(elements.next());
+                return true;
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return Stream.this.size < 0 ? Long.MAX_VALUE : Stream.this.size;
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return Stream.this.flags & (Spliterator.ORDERED | Spliterator.SIZED);
+            }
+        };
+
+        return new StreamCache<>(source, maxRetained);
+    }
+
+    // The bulk-terminal loop: pulls the elements a batch at a time.
+    @SuppressWarnings("unchecked")
+    private static <U> void forEachRemaining(Iterator<? extends U> elements, Consumer1<? super U> consumer)
+    {
+        Object[] batch = new Object[BATCH_SIZE];
+
+        for (int count; (count = elements.nextBatch(batch, BATCH_SIZE)) > 0; )
         {
-            result.add(elements.next());
+            for (int i = 0; i < count; ++i)
+            {
+                consumer.accept((U) batch[i]);
+            }
         }
+    }
+
+    public List<T> collect()
+    {
+        // Presize when the exact count is known (SIZED source, no filtering stages).
+        List<T> result = this.size >= 0 && this.size < Integer.MAX_VALUE - 8
+                ? new ArrayList<>((int) this.size)
+                : new ArrayList<>();
 
+        forEachRemaining(elements, result::add);
         return result;
     }
 
+    // The elements as an unmodifiable list. Unlike collect(), it never copies elements to grow: they go into a
+    // SpinedBuffer (of exactly the right size, if the stream is SIZED), which the list is a view of.
+    public List<T> toList()
+    {
+        return this.spined(new SpinedBuffer<>()).asList();
+    }
+
+    public Object[] toArray()
+    {
+        return this.spined(new SpinedBuffer<>()).toArray();
+    }
+
+    // The elements in an array from the generator. Of a known size, the elements are written straight into that
+    // array; otherwise they are copied into it once, from a SpinedBuffer.
+    public <A> A[] toArray(IntFunction1<A[]> generator)
+    {
+        return this.spined(new SpinedBuffer<>(generator)).toArray(generator);
+    }
+
+    private SpinedBuffer<T> spined(SpinedBuffer<T> buffer)
+    {
+        buffer.presize(this.size);
+        forEachRemaining(elements, buffer::add);
+        return buffer;
+    }
+
     public <A, R> R collect(Collector<? super T, A, R> collector)
     {
         A acc = collector.supplier().get(); // TODO: rename?
         Consumer2<A, ? super T> accumulator = collector.accumulator();
 
-        while (elements.hasNext())
-        {
-            accumulator.accept(acc, elements.next());
-        }
+        forEachRemaining(elements, input -> accumulator.accept(acc, input));
 
-        return collector.finalizer().apply(acc);
+        return Collectors.finish(collector, acc);
     }
 
     public static void main(String[] args)
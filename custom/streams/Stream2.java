@@ -1,11 +1,21 @@
 package custom.streams;
 
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class Stream2<T>
 {
     private static final Spliterator<Object> EMPTY_SPLITERATOR = consumer -> false;
+    private static final Object NULL_KEY = new Object(); // Stands in for null in concurrent sets.
+    private static final Object NO_OUTPUT = new Object(); // A sliding aggregation's first window isn't full yet.
 
     @SuppressWarnings("unchecked")
     private static <U> Spliterator<U> emptySpliterator()
@@ -15,126 +25,1928 @@ public class Stream2<T>
 
     public static <U> Spliterator<U> adaptSpliterator(java.util.Spliterator<U> elements)
     {
-        return consumer -> elements.tryAdvance(consumer::accept);
+        return new Spliterator<U>() {
+            // The JDK-side adapter for the last consumer seen, so that element-at-a-time pulls with the same consumer
+            // (the usual case) don't allocate one per call.
+            private Consumer1<? super U> lastConsumer = null;
+            private java.util.function.Consumer<U> lastAdapter = null;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                if (consumer != this.lastConsumer)
+                {
+                    this.lastConsumer = consumer;
+                    this.lastAdapter = consumer::accept;
+                }
+
+                return elements.tryAdvance(this.lastAdapter);
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super U> consumer)
+            {
+                elements.forEachRemaining(consumer::accept);
+            }
+
+            @Override
+            public Spliterator<U> trySplit()
+            {
+                java.util.Spliterator<U> prefix = elements.trySplit();
+                return prefix == null ? null : adaptSpliterator(prefix);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics();
+            }
+        };
     }
 
     public static <U> Spliterator<U> toSpliter(java.lang.Iterable<U> elements)
     {
+        if (elements instanceof List && elements instanceof RandomAccess)
+        {
+            return new ListSpliterator<>((List<U>) elements);
+        }
+
         return adaptSpliterator(elements.spliterator());
     }
 
-    // BEGIN
+    // For stages that only drop elements by position (takeWhile, dropWhile): the upstream's characteristics, minus
+    // the ones the stage can't preserve, reported over the stage's own tryAdvance.
+    private static <T> Spliterator<T> withCharacteristics(
+            Spliterator<T> elements,
+            Spliterator<?> upstream,
+            int clearedCharacteristics)
+    {
+        return new Spliterator<T>() {
+            @Override
+            public boolean tryAdvance(Consumer1<? super T> consumer)
+            {
+                return elements.tryAdvance(consumer);
+            }
 
-    final Spliterator<? extends T> elements;
+            @Override
+            public long estimateSize()
+            {
+                return upstream.estimateSize();
+            }
 
-    private Stream2(Spliterator<? extends T> elements)
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return upstream.characteristics() & ~clearedCharacteristics;
+            }
+        };
+    }
+
+    private static <T, U> Spliterator<U> mapSpliterator(
+            Spliterator<? extends T> elements,
+            Function1<? super T, ? extends U> mapper)
     {
-        this.elements = elements;
+        return new Spliterator<U>() {
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super U> consumer)
+            {
+                elements.forEachRemaining(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public Spliterator<U> trySplit()
+            {
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : mapSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
     }
 
-    public static <U> Stream2<U> of(Spliterator<? extends U> elements)
+    private static <T> IntSpliterator mapToIntSpliterator(
+            Spliterator<? extends T> elements,
+            ToIntFunction1<? super T> mapper)
     {
-        return new Stream2<>(elements);
+        return new IntSpliterator() {
+            @Override
+            public boolean tryAdvance(IntConsumer1 consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public IntSpliterator trySplit()
+            {
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : mapToIntSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
     }
 
-    public static <U> Stream2<U> of(Iterable<? extends U> elements)
+    private static <T> LongSpliterator mapToLongSpliterator(
+            Spliterator<? extends T> elements,
+            ToLongFunction1<? super T> mapper)
     {
-        return new Stream2<>(toSpliter(elements));
+        return new LongSpliterator() {
+            @Override
+            public boolean tryAdvance(LongConsumer1 consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public LongSpliterator trySplit()
+            {
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : mapToLongSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
     }
 
-    @SafeVarargs
-    @SuppressWarnings("varargs")
-    public static <U> Stream2<U> of(U... elements)
+    private static <T> DoubleSpliterator mapToDoubleSpliterator(
+            Spliterator<? extends T> elements,
+            ToDoubleFunction1<? super T> mapper)
+    {
+        return new DoubleSpliterator() {
+            @Override
+            public boolean tryAdvance(DoubleConsumer1 consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(input)));
+            }
+
+            @Override
+            public DoubleSpliterator trySplit()
+            {
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : mapToDoubleSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
+    }
+
+    private static <T> Spliterator<T> filterSpliterator(
+            Spliterator<? extends T> elements,
+            Predicate<? super T> predicate)
     {
-        return new Stream2<>(toSpliter(Arrays.asList(elements)));
+        return new Spliterator<T>() {
+            private boolean matched = false;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super T> consumer)
+            {
+                // Keep pulling until an element passes, so that one call consumes (at most) one element downstream.
+                this.matched = false;
+
+                while (!this.matched && elements.tryAdvance(input -> {
+                    if (predicate.test(input))
+                    {
+                        this.matched = true;
+                        consumer.accept(input);
+                    }
+                }));
+
+                return this.matched;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super T> consumer)
+            {
+                elements.forEachRemaining(input -> {
+                    if (predicate.test(input))
+                    {
+                        consumer.accept(input);
+                    }
+                });
+            }
+
+            @Override
+            public Spliterator<T> trySplit()
+            {
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : filterSpliterator(prefix, predicate);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+            }
+        };
     }
 
-    public <U> Stream2<U> map(Function1<? super T, ? extends U> mapper)
+    private static <T, U> Spliterator<U> flatMapSpliterator(
+            Spliterator<? extends T> elements,
+            Function1<? super T, ? extends Stream2<? extends U>> flatMapper)
     {
-//        Spliterator<U> newSpliterator = new Spliterator<U>() {
-//            @Override
-//            public boolean tryAdvance(Consumer1<? super U> consumer)
-//            {
-//                Consumer1<T> newConsumer = new Consumer1<T>() {
-//                    @Override
-//                    public void accept(T input)
-//                    {
-//                        return consumer.accept(mapper.apply(input));
-//                    }
-//                };
-//
-//                return elements.tryAdvance(newConsumer);
-//            }
-//        };
+        return new Spliterator<U>() {
+            private Spliterator<? extends U> currentSpliterator = emptySpliterator();
+
+            // Allocated once, rather than a capturing lambda per upstream element.
+            private final Consumer1<T> advanceOuter = input -> {
+                this.currentSpliterator = flatMapper.apply(input).elements;
+            };
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                // Loop (rather than recurse) past empty inner streams, so long runs of them can't exhaust the stack.
+                while (!this.currentSpliterator.tryAdvance(consumer))
+                {
+                    if (!elements.tryAdvance(this.advanceOuter))
+                    {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super U> consumer)
+            {
+                this.currentSpliterator.forEachRemaining(consumer);
+                elements.forEachRemaining(input -> flatMapper.apply(input).elements.forEachRemaining(consumer));
+            }
+
+            @Override
+            public Spliterator<U> trySplit()
+            {
+                // Only split before traversal starts; afterwards the current inner spliterator precedes any prefix.
+                if (this.currentSpliterator != EMPTY_SPLITERATOR)
+                {
+                    return null;
+                }
+
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : flatMapSpliterator(prefix, flatMapper);
+            }
+
+            @Override
+            public void cancel()
+            {
+                this.currentSpliterator.cancel();
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & Spliterator.ORDERED;
+            }
+        };
+    }
+
+    private static <T, U> Spliterator<U> mapMultiSpliterator(
+            Spliterator<? extends T> elements,
+            Consumer2<? super T, ? super Consumer1<U>> mapper)
+    {
+        return new Spliterator<U>() {
+            // Pull mode has to hold on to whatever one upstream element expands into; the buffer is reused.
+            private final List<U> buffer = new ArrayList<>();
+            private final Consumer1<U> bufferAppender = this.buffer::add;
+            private final Consumer1<T> advanceOuter = input -> mapper.accept(input, this.bufferAppender);
+            private int bufferIndex = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                while (this.bufferIndex == this.buffer.size())
+                {
+                    this.buffer.clear();
+                    this.bufferIndex = 0;
+
+                    if (!elements.tryAdvance(this.advanceOuter))
+                    {
+                        return false;
+                    }
+                }
+
+                consumer.accept(this.buffer.get(this.bufferIndex++));
+                return true;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super U> consumer)
+            {
+                while (this.bufferIndex < this.buffer.size())
+                {
+                    consumer.accept(this.buffer.get(this.bufferIndex++));
+                }
+
+                Consumer1<U> downstream = consumer::accept;
+                elements.forEachRemaining(input -> mapper.accept(input, downstream));
+            }
+
+            @Override
+            public Spliterator<U> trySplit()
+            {
+                if (this.bufferIndex < this.buffer.size())
+                {
+                    return null;
+                }
+
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : mapMultiSpliterator(prefix, mapper);
+            }
+
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & Spliterator.ORDERED;
+            }
+        };
+    }
+
+    // Indices are assigned by position, so the spliterator only splits when the prefix's exact size is known
+    // (SUBSIZED); the suffix then continues from the prefix's end.
+    private static <T, U> Spliterator<U> mapIndexedSpliterator(
+            Spliterator<? extends T> elements,
+            long firstIndex,
+            LongObjFunction2<? super T, ? extends U> mapper)
+    {
+        return new Spliterator<U>() {
+            private long nextIndex = firstIndex;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                return elements.tryAdvance(input -> consumer.accept(mapper.apply(this.nextIndex++, input)));
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super U> consumer)
+            {
+                elements.forEachRemaining(input -> consumer.accept(mapper.apply(this.nextIndex++, input)));
+            }
+
+            @Override
+            public Spliterator<U> trySplit()
+            {
+                if (!elements.hasCharacteristics(Spliterator.SUBSIZED))
+                {
+                    return null;
+                }
+
+                Spliterator<? extends T> prefix = elements.trySplit();
+
+                if (prefix == null)
+                {
+                    return null;
+                }
+
+                Spliterator<U> indexedPrefix = mapIndexedSpliterator(prefix, this.nextIndex, mapper);
+                this.nextIndex += prefix.estimateSize();
+                return indexedPrefix;
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~(Spliterator.SORTED | Spliterator.DISTINCT);
+            }
+        };
+    }
+
+    private static <T, U, R> Spliterator<R> zipSpliterator(
+            Spliterator<? extends T> elements,
+            Spliterator<? extends U> others,
+            Function2<? super T, ? super U, ? extends R> zipper)
+    {
+        return new Spliterator<R>() {
+            private T left;
+            private final Consumer1<T> setLeft = input -> this.left = input;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super R> consumer)
+            {
+                return elements.tryAdvance(this.setLeft)
+                        && others.tryAdvance(right -> consumer.accept(zipper.apply(this.left, right)));
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return Math.min(elements.estimateSize(), others.estimateSize());
+            }
+
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+                others.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & others.characteristics() & (Spliterator.ORDERED | Spliterator.SIZED);
+            }
+        };
+    }
+
+    // Pull side of the barrier stages (sorted, and sorted-then-take as top-K): computes all of its elements on first
+    // use and then serves them from an array, splitting by index range. Being asked to split before that means the
+    // stream is running in parallel, so the elements are then computed in parallel too.
+    private static final class BarrierSpliterator<T> implements Spliterator<T>
+    {
+        private final Spliterator<? extends T> upstream;
+        private final Function2<Spliterator<? extends T>, Boolean, Object[]> compute;
+        private final int characteristics;
+        final Comparator<? super T> sortComparator; // Set for sorted, so take can fuse into a top-K.
+
+        private Object[] array = null;
+        private int index = 0;
+        private int fence = 0;
+
+        BarrierSpliterator(
+                Spliterator<? extends T> upstream,
+                Function2<Spliterator<? extends T>, Boolean, Object[]> compute,
+                int characteristics,
+                Comparator<? super T> sortComparator)
+        {
+            this.upstream = upstream;
+            this.compute = compute;
+            this.characteristics = characteristics;
+            this.sortComparator = sortComparator;
+        }
+
+        private BarrierSpliterator(BarrierSpliterator<T> parent, int index, int fence)
+        {
+            this(parent.upstream, parent.compute, parent.characteristics, parent.sortComparator);
+            this.array = parent.array;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        boolean isStarted()
+        {
+            return this.array != null;
+        }
+
+        private void computeOnce(boolean isParallel)
+        {
+            if (this.array == null)
+            {
+                this.array = this.compute.apply(this.upstream, isParallel);
+                this.fence = this.array.length;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer1<? super T> consumer)
+        {
+            this.computeOnce(false);
+
+            if (this.index == this.fence)
+            {
+                return false;
+            }
+
+            consumer.accept((T) this.array[this.index++]);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer1<? super T> consumer)
+        {
+            this.computeOnce(false);
+
+            for (; this.index < this.fence; ++this.index)
+            {
+                consumer.accept((T) this.array[this.index]);
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit()
+        {
+            this.computeOnce(true);
+
+            int mid = (this.index + this.fence) >>> 1;
+
+            if (mid == this.index)
+            {
+                return null;
+            }
+
+            Spliterator<T> prefix = new BarrierSpliterator<>(this, this.index, mid);
+            this.index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return this.array != null ? this.fence - this.index : this.upstream.estimateSize();
+        }
+
+        @Override
+        public int characteristics()
+        {
+            boolean isSized = this.array != null || this.upstream.hasCharacteristics(Spliterator.SIZED);
+            return isSized ? this.characteristics | Spliterator.SIZED | Spliterator.SUBSIZED : this.characteristics;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Object[] sortedArray(
+            Spliterator<? extends T> elements,
+            boolean isParallel,
+            Comparator<? super T> comparator)
+    {
+        if (isParallel)
+        {
+            Object[] array = spinedBuffer(elements).toArray();
+            Arrays.parallelSort((T[]) array, comparator);
+            return array;
+        }
+
+        SpinedBuffer<T> buffer = new SpinedBuffer<>();
+        buffer.presize(elements.hasCharacteristics(Spliterator.SIZED) ? elements.estimateSize() : -1);
+        elements.forEachRemaining(buffer::add);
+        Object[] array = buffer.toArray();
+        Arrays.sort((T[]) array, comparator);
+        return array;
+    }
+
+    private static <T> Object[] topKArray(
+            Spliterator<? extends T> elements,
+            boolean isParallel,
+            int k,
+            Comparator<? super T> comparator)
+    {
+        if (isParallel)
+        {
+            return ForkJoinPool.commonPool().invoke(new CollectTask<>(elements, Collector.<T, TopK<T>, TopK<T>>of(
+                    () -> new TopK<>(k, comparator),
+                    TopK::add,
+                    TopK::addAll,
+                    topK -> topK
+            ))).toSortedArray();
+        }
+
+        TopK<T> topK = new TopK<>(k, comparator);
+        elements.forEachRemaining(topK::add);
+        return topK.toSortedArray();
+    }
+
+    // Push side of the barrier stages: begins the downstream only once all elements are known.
+    @SuppressWarnings("unchecked")
+    private static <T> void pushAll(Object[] array, Sink<? super T> downstream)
+    {
+        downstream.begin(array.length);
+
+        for (int i = 0; i < array.length && !downstream.cancellationRequested(); ++i)
+        {
+            downstream.accept((T) array[i]);
+        }
+
+        downstream.end();
+    }
+
+    // Each split shares one set of seen elements; sequentially that is a plain HashSet, swapped for a concurrent
+    // one the first time the spliterator is split (which happens before any traversal).
+    private static <T> Spliterator<T> distinctSpliterator(Spliterator<? extends T> elements, Set<Object> initialSeen)
+    {
+        return new Spliterator<T>() {
+            private Set<Object> seen = initialSeen;
+            private boolean isNew = false;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super T> consumer)
+            {
+                // Like filter: keep pulling until an element not seen before turns up.
+                this.isNew = false;
+
+                while (!this.isNew && elements.tryAdvance(input -> {
+                    if (this.seen.add(input == null ? NULL_KEY : input))
+                    {
+                        this.isNew = true;
+                        consumer.accept(input);
+                    }
+                }));
+
+                return this.isNew;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super T> consumer)
+            {
+                elements.forEachRemaining(input -> {
+                    if (this.seen.add(input == null ? NULL_KEY : input))
+                    {
+                        consumer.accept(input);
+                    }
+                });
+            }
+
+            @Override
+            public Spliterator<T> trySplit()
+            {
+                if (!(this.seen instanceof ConcurrentHashMap.KeySetView))
+                {
+                    Set<Object> concurrentSeen = ConcurrentHashMap.newKeySet();
+                    concurrentSeen.addAll(this.seen);
+                    this.seen = concurrentSeen;
+                }
+
+                Spliterator<? extends T> prefix = elements.trySplit();
+                return prefix == null ? null : distinctSpliterator(prefix, this.seen);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return (elements.characteristics() | Spliterator.DISTINCT) & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+            }
+        };
+    }
+
+    // BEGIN
+
+    final Spliterator<? extends T> elements;
+    final boolean parallel;
+
+    // Push-mode plan: a fusable stage remembers its upstream stage and how to wrap a sink for its own elements into
+    // a sink for its upstream's elements. A stage without one (a source, or a stage that can only pull) starts the
+    // fused chain, which then runs off that stage's spliterator.
+    private final Stream2<?> upstream;
+    private final Function1<Sink<? super T>, Sink<?>> wrapSink;
+    private final boolean isShortCircuit;
+
+    private Stream2(Spliterator<? extends T> elements)
+    {
+        this(elements, false);
+    }
+
+    private Stream2(Spliterator<? extends T> elements, boolean parallel)
+    {
+        this(elements, parallel, null, null, false);
+    }
+
+    private Stream2(
+            Spliterator<? extends T> elements,
+            boolean parallel,
+            Stream2<?> upstream,
+            Function1<Sink<? super T>, Sink<?>> wrapSink,
+            boolean isShortCircuit)
+    {
+        this.elements = elements;
+        this.parallel = parallel;
+        this.upstream = upstream;
+        this.wrapSink = wrapSink;
+        this.isShortCircuit = isShortCircuit;
+    }
+
+    public static <U> Stream2<U> of(Spliterator<? extends U> elements)
+    {
+        return new Stream2<>(elements);
+    }
+
+    public static <U> Stream2<U> of(Iterable<? extends U> elements)
+    {
+        return new Stream2<>(toSpliter(elements));
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public static <U> Stream2<U> of(U... elements)
+    {
+        return new Stream2<>(new ArraySpliterator<>(elements, 0, elements.length));
+    }
+
+    // The elements of array[fromIndex, toIndex), read in place.
+    public static <U> Stream2<U> of(U[] elements, int fromIndex, int toIndex)
+    {
+        return new Stream2<>(new ArraySpliterator<>(elements, fromIndex, toIndex));
+    }
+
+    // The ints in [startInclusive, endExclusive), in order.
+    public static Stream2<Integer> range(int startInclusive, int endExclusive)
+    {
+        return new Stream2<>(new RangeSpliterator(startInclusive, endExclusive));
+    }
+
+    // An infinite stream of the supplier's results. Bound it with take/takeWhile or a short-circuiting terminal, or
+    // consume it incrementally (e.g. through a sliding aggregation); collect and other full traversals never end.
+    public static <U> Stream2<U> generate(Supplier<? extends U> supplier)
+    {
+        return new Stream2<>(consumer -> {
+            consumer.accept(supplier.get());
+            return true;
+        });
+    }
+
+    // The infinite stream seed, next(seed), next(next(seed)), ...
+    public static <U> Stream2<U> iterate(U seed, Function1<? super U, ? extends U> next)
+    {
+        return iterate(seed, element -> true, next);
+    }
+
+    // Like a for loop: seed, next(seed), ... for as long as hasNext holds.
+    public static <U> Stream2<U> iterate(U seed, Predicate<? super U> hasNext, Function1<? super U, ? extends U> next)
+    {
+        return new Stream2<>(new Spliterator<U>() {
+            private U current = null;
+            private boolean isStarted = false;
+            private boolean isFinished = false;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                if (this.isFinished)
+                {
+                    return false;
+                }
+
+                U element = this.isStarted ? next.apply(this.current) : seed;
+                this.isStarted = true;
+
+                if (!hasNext.test(element))
+                {
+                    this.isFinished = true;
+                    this.current = null;
+                    return false;
+                }
+
+                this.current = element;
+                consumer.accept(element);
+                return true;
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return Spliterator.ORDERED;
+            }
+        });
+    }
+
+    // The records of a memory-mapped file, split on the delimiter (which is not included in the records). Each record
+    // is a read-only view of the mapping; nothing is copied. The stream splits at record boundaries, so it can be
+    // consumed in parallel.
+    public static Stream2<ByteBuffer> delimitedRecords(Path path, byte delimiter)
+    {
+        return new Stream2<>(MappedRecordSpliterator.delimited(path, delimiter));
+    }
+
+    // The fixed-size records of a memory-mapped file (the last one is short if the file size isn't a multiple of
+    // recordSize), as read-only views of the mapping.
+    public static Stream2<ByteBuffer> fixedRecords(Path path, int recordSize)
+    {
+        return new Stream2<>(MappedRecordSpliterator.fixed(path, recordSize));
+    }
+
+    public static Stream2<String> lines(Path path)
+    {
+        return lines(path, StandardCharsets.UTF_8);
+    }
+
+    // The lines of a memory-mapped file ('\n' or "\r\n" terminated), each decoded with the given charset.
+    public static Stream2<String> lines(Path path, Charset charset)
+    {
+        return delimitedRecords(path, (byte) '\n').map(line -> charset.decode(withoutCarriageReturn(line)).toString());
+    }
+
+    // The lines of a memory-mapped file as zero-copy CharSequence views, one char per byte. Only correct for ASCII
+    // (or ISO-8859-1) content; use lines(Path) otherwise.
+    public static Stream2<CharSequence> asciiLines(Path path)
+    {
+        return delimitedRecords(path, (byte) '\n').map(line -> new ByteCharSequence(withoutCarriageReturn(line)));
+    }
+
+    // The elements of a reactive publisher, subscribed to when the stream is first pulled. At most 'prefetch'
+    // elements are requested ahead of consumption, so a fast publisher is held back rather than buffered without
+    // bound. An error from the publisher is rethrown by the terminal operation.
+    public static <U> Stream2<U> fromPublisher(Flow.Publisher<? extends U> publisher, int prefetch)
+    {
+        return new Stream2<>(new PublisherSpliterator<U>(publisher, prefetch));
+    }
+
+    private static ByteBuffer withoutCarriageReturn(ByteBuffer line)
+    {
+        int length = line.remaining();
+
+        if (length > 0 && line.get(line.position() + length - 1) == '\r')
+        {
+            return line.slice(line.position(), length - 1);
+        }
+
+        return line;
+    }
+
+    // Terminal operations on a parallel stream fork the source's splits over the common ForkJoinPool. Only stages
+    // that can split their upstream (map, filter, flatMap) stay parallel; anything downstream of an order-dependent
+    // stage (take, drop, takeWhile, dropWhile) runs as a single split.
+    public Stream2<T> parallel()
+    {
+        return new Stream2<>(this.elements, true, this.upstream, this.wrapSink, this.isShortCircuit);
+    }
+
+    public Stream2<T> sequential()
+    {
+        return new Stream2<>(this.elements, false, this.upstream, this.wrapSink, this.isShortCircuit);
+    }
+
+    public boolean isParallel()
+    {
+        return this.parallel;
+    }
+
+    public <U> Stream2<U> map(Function1<? super T, ? extends U> mapper)
+    {
+//        Spliterator<U> newSpliterator = new Spliterator<U>() {
+//            @Override
+//            public boolean tryAdvance(Consumer1<? super U> consumer)
+//            {
+//                Consumer1<T> newConsumer = new Consumer1<T>() {
+//                    @Override
+//                    public void accept(T input)
+//                    {
+//                        return consumer.accept(mapper.apply(input));
+//                    }
+//                };
+//
+//                return elements.tryAdvance(newConsumer);
+//            }
+//        };
+
+        Function1<Sink<? super U>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, U>(downstream) {
+            @Override
+            public void accept(T input)
+            {
+                this.downstream.accept(mapper.apply(input));
+            }
+        };
+
+        return new Stream2<>(mapSpliterator(this.elements, mapper), this.parallel, this, wrapSink, false);
+    }
+
+    // Runs a blocking mapper (e.g. a lookup) on background threads, at most maxConcurrency calls at a time, keeping
+    // the upstream order.
+    public <U> Stream2<U> mapAsync(int maxConcurrency, Function1<? super T, ? extends U> mapper)
+    {
+        return this.mapAsync(maxConcurrency, mapper, true);
+    }
+
+    // Like mapAsync, but emits results as they complete, so one slow call doesn't hold back the others.
+    public <U> Stream2<U> mapAsyncUnordered(int maxConcurrency, Function1<? super T, ? extends U> mapper)
+    {
+        return this.mapAsync(maxConcurrency, mapper, false);
+    }
+
+    // The in-flight bound is per stage, so the new spliterator doesn't split. Calls still in flight are cancelled once
+    // a short-circuiting downstream has seen enough: in push mode by end(); in pull mode by cancel(), or, if the
+    // spliterator is just dropped, once it is garbage.
+    private <U> Stream2<U> mapAsync(int maxConcurrency, Function1<? super T, ? extends U> mapper, boolean ordered)
+    {
+        AsyncMapper<T, U> pullMapper = new AsyncMapper<>(maxConcurrency, mapper, ordered);
+
+        Spliterator<U> newSpliterator = new Spliterator<U>() {
+            private final Consumer1<T> submitOne = pullMapper::submit;
+            private final Cleaner.Cleanable cancelOnDrop = AsyncMapper.CLEANER.register(this, pullMapper::cancel);
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super U> consumer)
+            {
+                while (!pullMapper.isFull() && elements.tryAdvance(this.submitOne));
+
+                if (pullMapper.isEmpty())
+                {
+                    return false;
+                }
+
+                consumer.accept(pullMapper.next());
+                return true;
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public void cancel()
+            {
+                this.cancelOnDrop.clean(); // Cancels the calls in flight, once.
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return ordered ? elements.characteristics() & Spliterator.ORDERED : 0;
+            }
+        };
+
+        Function1<Sink<? super U>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, U>(downstream) {
+            private final AsyncMapper<T, U> asyncMapper = new AsyncMapper<>(maxConcurrency, mapper, ordered);
+
+            @Override
+            public void accept(T input)
+            {
+                if (this.asyncMapper.isFull())
+                {
+                    this.downstream.accept(this.asyncMapper.next());
+                }
+
+                this.asyncMapper.submit(input);
+            }
+
+            @Override
+            public void end()
+            {
+                while (!this.asyncMapper.isEmpty() && !this.downstream.cancellationRequested())
+                {
+                    this.downstream.accept(this.asyncMapper.next());
+                }
+
+                this.asyncMapper.cancel();
+                this.downstream.end();
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
+    }
+
+    public IntStream2 mapToInt(ToIntFunction1<? super T> mapper)
+    {
+        return IntStream2.of(mapToIntSpliterator(this.elements, mapper));
+    }
+
+    public LongStream2 mapToLong(ToLongFunction1<? super T> mapper)
+    {
+        return LongStream2.of(mapToLongSpliterator(this.elements, mapper));
+    }
+
+    public DoubleStream2 mapToDouble(ToDoubleFunction1<? super T> mapper)
+    {
+        return DoubleStream2.of(mapToDoubleSpliterator(this.elements, mapper));
+    }
+
+    public <U> Stream2<U> flatMap(Function1<? super T, ? extends Stream2<? extends U>> flatMapper)
+    {
+        Function1<Sink<? super U>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, U>(downstream) {
+            private boolean isCancellable = false;
+
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(-1);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                Spliterator<? extends U> inner = flatMapper.apply(input).elements;
+
+                if (this.isCancellable)
+                {
+                    while (!this.downstream.cancellationRequested() && inner.tryAdvance(this.downstream));
+                }
+                else
+                {
+                    inner.forEachRemaining(this.downstream);
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                // Only short-circuiting pipelines poll for cancellation; once one does, inner streams must too.
+                this.isCancellable = true;
+                return this.downstream.cancellationRequested();
+            }
+        };
+
+        return new Stream2<>(flatMapSpliterator(this.elements, flatMapper), this.parallel, this, wrapSink, false);
+    }
+
+    // Like flatMap, but the mapper pushes each sub-element straight to the given consumer, so no intermediate
+    // Stream2 (or spliterator) is created per upstream element.
+    public <U> Stream2<U> mapMulti(Consumer2<? super T, ? super Consumer1<U>> mapper)
+    {
+        Function1<Sink<? super U>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, U>(downstream) {
+            private final Consumer1<U> downstreamConsumer = this.downstream::accept;
+
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(-1);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                mapper.accept(input, this.downstreamConsumer);
+            }
+        };
+
+        return new Stream2<>(mapMultiSpliterator(this.elements, mapper), this.parallel, this, wrapSink, false);
+    }
+
+    // Maps each element together with its position, without boxing the index or allocating a pair.
+    public <U> Stream2<U> mapIndexed(LongObjFunction2<? super T, ? extends U> mapper)
+    {
+        Function1<Sink<? super U>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, U>(downstream) {
+            private long nextIndex = 0;
+
+            @Override
+            public void accept(T input)
+            {
+                this.downstream.accept(mapper.apply(this.nextIndex++, input));
+            }
+        };
+
+        return new Stream2<>(mapIndexedSpliterator(this.elements, 0, mapper), this.parallel, this, wrapSink, false);
+    }
+
+    public Stream2<Indexed<T>> zipWithIndex()
+    {
+        return this.mapIndexed(Indexed::new);
+    }
+
+    // Pairs elements by position, ending with the shorter stream. The other stream is pulled one element at a time.
+    public <U, R> Stream2<R> zip(Stream2<? extends U> other, Function2<? super T, ? super U, ? extends R> zipper)
+    {
+        Spliterator<? extends U> others = other.elements;
+
+        Function1<Sink<? super R>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, R>(downstream) {
+            private T left;
+            private final Consumer1<U> acceptRight = right -> this.downstream.accept(zipper.apply(this.left, right));
+            private boolean isOtherExhausted = false;
+
+            @Override
+            public void begin(long size)
+            {
+                boolean isSized = size >= 0 && others.hasCharacteristics(Spliterator.SIZED);
+                this.downstream.begin(isSized ? Math.min(size, others.estimateSize()) : -1);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                if (!this.isOtherExhausted)
+                {
+                    this.left = input;
+                    this.isOtherExhausted = !others.tryAdvance(this.acceptRight);
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return this.isOtherExhausted || this.downstream.cancellationRequested();
+            }
+        };
+
+        return new Stream2<>(zipSpliterator(this.elements, others, zipper), this.parallel, this, wrapSink, true);
+    }
+
+    public <U> Stream2<Map.Entry<T, U>> zip(Stream2<? extends U> other)
+    {
+        return this.zip(other, AbstractMap.SimpleImmutableEntry::new);
+    }
+
+    public Stream2<T> filter(Predicate<? super T> predicate)
+    {
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, T>(downstream) {
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(-1);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                if (predicate.test(input))
+                {
+                    this.downstream.accept(input);
+                }
+            }
+        };
+
+        return new Stream2<>(filterSpliterator(this.elements, predicate), this.parallel, this, wrapSink, false);
+    }
+
+    public boolean anyMatch(Predicate<T> predicate)
+    {
+        if (this.parallel)
+        {
+            return ForkJoinPool.commonPool().invoke(new FindTask<>(this.elements, predicate, false)) != null;
+        }
+
+        boolean[] matched = new boolean[]{false};
+
+        this.evaluate(new Sink<T>() {
+            @Override
+            public void accept(T input)
+            {
+                matched[0] = matched[0] || predicate.test(input);
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return matched[0];
+            }
+        }, true);
+
+        return matched[0];
+    }
+
+    public boolean allMatch(Predicate<T> predicate)
+    {
+        if (this.parallel)
+        {
+            Predicate<T> fails = input -> !predicate.test(input);
+            return ForkJoinPool.commonPool().invoke(new FindTask<>(this.elements, fails, false)) == null;
+        }
+
+        boolean[] matched = new boolean[]{true};
+
+        this.evaluate(new Sink<T>() {
+            @Override
+            public void accept(T input)
+            {
+                matched[0] = matched[0] && predicate.test(input);
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return !matched[0];
+            }
+        }, true);
+
+        return matched[0];
+    }
+
+    public Optional<T> findFirst()
+    {
+        if (this.parallel)
+        {
+            boolean ordered = this.elements.hasCharacteristics(Spliterator.ORDERED);
+            return found(ForkJoinPool.commonPool().invoke(new FindTask<>(this.elements, input -> true, ordered)));
+        }
+
+        AtomicReference<Optional<T>> first = new AtomicReference<>(Optional.empty());
+
+        this.evaluate(new Sink<T>() {
+            @Override
+            public void accept(T input)
+            {
+                if (!first.get().isPresent())
+                {
+                    first.set(Optional.of(input));
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return first.get().isPresent();
+            }
+        }, true);
+
+        return first.get();
+    }
+
+    // Any element: in parallel, whichever split finds one first; sequentially, the first.
+    public Optional<T> findAny()
+    {
+        if (this.parallel)
+        {
+            return found(ForkJoinPool.commonPool().invoke(new FindTask<>(this.elements, input -> true, false)));
+        }
+
+        return this.findFirst();
+    }
+
+    private static <T> Optional<T> found(FindTask.Match<T> match)
+    {
+        if (match == null)
+        {
+            return Optional.empty();
+        }
+
+        if (match.element == null)
+        {
+            throw new NullPointerException("the element found is null");
+        }
+
+        return Optional.of(match.element);
+    }
+
+    // Sorts by natural order; the elements must be Comparable.
+    @SuppressWarnings("unchecked")
+    public Stream2<T> sorted()
+    {
+        return this.sorted((Comparator<? super T>) Comparator.naturalOrder());
+    }
+
+    // A stable sort (a merge sort; in parallel, Arrays.parallelSort over a parallel collection of the upstream).
+    // Followed directly by take(k), the two run as a top-K selection instead.
+    public Stream2<T> sorted(Comparator<? super T> comparator)
+    {
+        int characteristics = this.elements.characteristics() & Spliterator.DISTINCT
+                | Spliterator.ORDERED | Spliterator.SORTED;
+        Spliterator<T> newSpliterator = new BarrierSpliterator<T>(
+                this.elements,
+                (elements, isParallel) -> sortedArray(elements, isParallel, comparator),
+                characteristics,
+                comparator);
+
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, T>(downstream) {
+            private SpinedBuffer<T> buffer = null;
+
+            @Override
+            public void begin(long size)
+            {
+                this.buffer = new SpinedBuffer<>();
+                this.buffer.presize(size);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                this.buffer.add(input);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void end()
+            {
+                Object[] array = this.buffer.toArray();
+                this.buffer = null;
+                Arrays.sort((T[]) array, comparator);
+                pushAll(array, this.downstream);
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return false;
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
+    }
+
+    // Like sorted(comparator), but for more elements than fit in the heap: at most about options' byte budget of
+    // elements is kept in memory, and sorted runs beyond that are spilled to temporary files and merged back lazily.
+    // The upstream is consumed sequentially, and the merged output doesn't split.
+    public Stream2<T> sorted(Comparator<? super T> comparator, SpillOptions<T> options)
+    {
+        int characteristics = this.elements.characteristics() & Spliterator.DISTINCT
+                | Spliterator.ORDERED | Spliterator.SORTED;
+        return this.spilling(() -> new ExternalSorter<>(comparator, options), characteristics);
+    }
+
+    // Groups the elements by key like Collectors.groupingBy(classifier, downstream), but for more elements than fit
+    // in the heap: past options' byte budget, elements are hash-partitioned by key into temporary files, and each
+    // partition is grouped in memory when the result gets to it. The groups come out as a stream (in no particular
+    // order) rather than a map, so they needn't all be in memory at once either. The upstream is consumed
+    // sequentially; the groups split by partition, so they can be consumed in parallel.
+    public <K, V> Stream2<Map.Entry<K, V>> groupingBy(
+            Function1<? super T, ? extends K> classifier,
+            Collector<? super T, ?, V> downstream,
+            SpillOptions<T> options)
+    {
+        Collector<? super T, ?, Map<K, V>> grouping = Collectors.groupingBy(classifier, downstream);
+        return this.spilling(() -> new SpillingGrouper<>(classifier, grouping, options, 0), Spliterator.DISTINCT);
+    }
+
+    // A barrier stage whose state may spill to disk. Pulled, it drains the upstream into a new spiller on first use;
+    // pushed, it does so as the elements arrive. Either way its output is then read from the spiller's result.
+    private <R> Stream2<R> spilling(Supplier<Spiller<T, R>> newSpiller, int characteristics)
+    {
+        Spliterator<? extends T> upstream = this.elements;
+
+        Spliterator<R> newSpliterator = new Spliterator<R>() {
+            private Spliterator<R> result = null;
+
+            private Spliterator<R> result()
+            {
+                if (this.result == null)
+                {
+                    Spiller<T, R> spiller = newSpiller.get();
+
+                    try
+                    {
+                        upstream.forEachRemaining(spiller::add);
+                        this.result = new ClosingSpliterator<>(spiller.result(), spiller);
+                    }
+                    catch (RuntimeException | Error e)
+                    {
+                        spiller.close();
+                        throw e;
+                    }
+                }
+
+                return this.result;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super R> consumer)
+            {
+                return this.result().tryAdvance(consumer);
+            }
+
+            @Override
+            public void forEachRemaining(Consumer1<? super R> consumer)
+            {
+                this.result().forEachRemaining(consumer);
+            }
+
+            @Override
+            public Spliterator<R> trySplit()
+            {
+                return this.result().trySplit();
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return this.result != null ? this.result.estimateSize() : Long.MAX_VALUE;
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return this.result != null ? this.result.characteristics() : characteristics;
+            }
+        };
+
+        Function1<Sink<? super R>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, R>(downstream) {
+            private Spiller<T, R> spiller = null;
+
+            @Override
+            public void begin(long size)
+            {
+                this.spiller = newSpiller.get();
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                this.spiller.add(input);
+            }
+
+            @Override
+            public void end()
+            {
+                try
+                {
+                    Spliterator<R> result = this.spiller.result();
+                    this.downstream.begin(result.hasCharacteristics(Spliterator.SIZED) ? result.estimateSize() : -1);
+
+                    while (!this.downstream.cancellationRequested() && result.tryAdvance(this.downstream));
+
+                    this.downstream.end();
+                }
+                finally
+                {
+                    this.spiller.close();
+                    this.spiller = null;
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return false;
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
+    }
+
+    // The k smallest elements by the comparator, in order, in O(n log k) time and O(k) memory.
+    private Stream2<T> topK(int k, Comparator<? super T> comparator)
+    {
+        int characteristics = this.elements.characteristics() & Spliterator.DISTINCT
+                | Spliterator.ORDERED | Spliterator.SORTED;
+        Spliterator<T> newSpliterator = new BarrierSpliterator<T>(
+                this.elements,
+                (elements, isParallel) -> topKArray(elements, isParallel, k, comparator),
+                characteristics,
+                null);
+
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, T>(downstream) {
+            private final TopK<T> topK = new TopK<>(k, comparator);
+
+            @Override
+            public void begin(long size)
+            {
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                this.topK.add(input);
+            }
+
+            @Override
+            public void end()
+            {
+                pushAll(this.topK.toSortedArray(), this.downstream);
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return false;
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
+    }
+
+    // Drops elements equal to an earlier one, using their hashCode/equals. A no-op on a DISTINCT stream. In parallel,
+    // which of several equal elements survives (and so its position) is unspecified.
+    public Stream2<T> distinct()
+    {
+        if (this.elements.hasCharacteristics(Spliterator.DISTINCT))
+        {
+            return this;
+        }
+
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, T>(downstream) {
+            private final Set<T> seen = new HashSet<>();
+
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(-1);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                if (this.seen.add(input))
+                {
+                    this.downstream.accept(input);
+                }
+            }
+        };
+
+        return new Stream2<>(distinctSpliterator(this.elements, new HashSet<>()), this.parallel, this, wrapSink, false);
+    }
+
+    // Opt-in metrics for the stage this is called on (e.g. map(f).instrument("parse")): elements in and out, and
+    // the time and bytes allocated in the stage itself, added to PipelineMetrics.global() under the name and emitted
+    // as "custom.streams.Stage" JFR events. Only instrumented stages pay for the measuring.
+    public Stream2<T> instrument(String name)
+    {
+        return this.instrument(name, PipelineMetrics.global());
+    }
+
+    public Stream2<T> instrument(String name, PipelineMetrics metrics)
+    {
+        StageMetrics stageMetrics = metrics.stage(name);
+        Spliterator<T> newSpliterator = Instrumentation.pullSpliterator(this.elements, stageMetrics);
+
+        if (this.upstream == null)
+        {
+            // A source: nothing to time, but its elements can be counted on the way out.
+            Function1<Sink<? super T>, Sink<?>> wrapSink =
+                    downstream -> new Instrumentation.Probe(stageMetrics).counter(downstream);
+
+            return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
+        }
+
+        // Replaces this stage with one whose sink is bracketed by the probe's entry and exit sinks.
+        Function1<Sink<? super T>, Sink<?>> stageWrapSink = this.wrapSink;
+
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> {
+            Instrumentation.Probe probe = new Instrumentation.Probe(stageMetrics);
+            return probe.entry(stageWrapSink.apply(probe.exit(downstream)));
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this.upstream, wrapSink, this.isShortCircuit);
+    }
+
+    // Consecutive groups of 'size' elements, each in its own list; the last group may be shorter.
+    public Stream2<List<T>> grouped(int size)
+    {
+        return this.windows(() -> new Windower<>(size, size, true, false));
+    }
+
+    // Like grouped, but every group is the same reused, read-only list, valid only until the next group is requested.
+    // For handing batches to a consumer (e.g. a bulk write) that doesn't keep them.
+    public Stream2<List<T>> batched(int size)
+    {
+        return this.windows(() -> new Windower<>(size, size, true, true));
+    }
+
+    // Full windows of 'size' elements, starting every 'step' elements.
+    public Stream2<List<T>> windowed(int size, int step)
+    {
+        return this.windowed(size, step, false);
+    }
+
+    // With 'reuse', every window is the same read-only view of one ring buffer, valid only until the next window is
+    // requested, so no list is allocated per window.
+    public Stream2<List<T>> windowed(int size, int step, boolean reuse)
+    {
+        return this.windows(() -> new Windower<>(size, step, false, reuse));
+    }
+
+    public Stream2<List<T>> sliding(int size)
+    {
+        return this.windowed(size, 1, false);
+    }
+
+    // Windows depend on every element before them, so the new spliterator doesn't split.
+    private Stream2<List<T>> windows(Supplier<Windower<T>> windowerFactory)
+    {
+        Windower<T> pullWindower = windowerFactory.get(); // Also validates size and step up front.
+
+        Spliterator<List<T>> newSpliterator = new Spliterator<List<T>>() {
+            private List<T> nextWindow = null;
+            private final Consumer1<T> pushOne = input -> this.nextWindow = pullWindower.push(input);
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super List<T>> consumer)
+            {
+                while (this.nextWindow == null && elements.tryAdvance(this.pushOne));
+
+                if (this.nextWindow == null && (this.nextWindow = pullWindower.flush()) == null)
+                {
+                    return false;
+                }
+
+                List<T> window = this.nextWindow;
+                this.nextWindow = null;
+                consumer.accept(window);
+                return true;
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & Spliterator.ORDERED;
+            }
+        };
+
+        Function1<Sink<? super List<T>>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, List<T>>(downstream) {
+            private final Windower<T> windower = windowerFactory.get();
+
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(-1);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                List<T> window = this.windower.push(input);
+
+                if (window != null)
+                {
+                    this.downstream.accept(window);
+                }
+            }
+
+            @Override
+            public void end()
+            {
+                List<T> window = this.downstream.cancellationRequested() ? null : this.windower.flush();
+
+                if (window != null)
+                {
+                    this.downstream.accept(window);
+                }
+
+                this.downstream.end();
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
+    }
+
+    // Sliding aggregations: one result per element, for the window of the last 'size' elements (emitted from the first
+    // full window on), or of the elements whose timestamps lie in (t - length, t] for an element at time t (emitted
+    // for every element; timestamps must not decrease). Each element costs amortized O(1), whatever the window size,
+    // and only the window's elements are kept, so they run on unbounded streams.
+
+    // The monoid's combination of lift(element) over each window, oldest to newest (two-stack technique).
+    public <A> Stream2<A> slidingAggregate(int size, Function1<? super T, ? extends A> lift, Monoid<A> monoid)
+    {
+        return this.slidingByCount(size, () -> new TwoStackWindow<T, A>(size, lift, monoid));
+    }
+
+    public <A> Stream2<A> slidingAggregate(
+            long length,
+            ToLongFunction1<? super T> timestamp,
+            Function1<? super T, ? extends A> lift,
+            Monoid<A> monoid)
+    {
+        return this.slidingByTime(length, timestamp, () -> new TwoStackWindow<T, A>(length, lift, monoid));
+    }
+
+    // The sum of value(element) over each window (subtract-on-evict: no per-window work at all).
+    public Stream2<Long> slidingSum(int size, ToLongFunction1<? super T> value)
+    {
+        return this.slidingByCount(size, () -> new SubtractingSumWindow<T>(size, value));
+    }
+
+    public Stream2<Long> slidingSum(long length, ToLongFunction1<? super T> timestamp, ToLongFunction1<? super T> value)
+    {
+        return this.slidingByTime(length, timestamp, () -> new SubtractingSumWindow<T>(length, value));
+    }
+
+    // The least element of each window by the comparator (the earliest of equal ones).
+    public Stream2<T> slidingMin(int size, Comparator<? super T> comparator)
+    {
+        return this.slidingByCount(size, () -> new MonotonicWindow<T>(size, comparator));
+    }
+
+    public Stream2<T> slidingMin(long length, ToLongFunction1<? super T> timestamp, Comparator<? super T> comparator)
+    {
+        return this.slidingByTime(length, timestamp, () -> new MonotonicWindow<T>(length, comparator));
+    }
+
+    // The greatest element of each window by the comparator (the earliest of equal ones).
+    public Stream2<T> slidingMax(int size, Comparator<? super T> comparator)
+    {
+        return this.slidingMin(size, Collections.reverseOrder(comparator));
+    }
+
+    public Stream2<T> slidingMax(long length, ToLongFunction1<? super T> timestamp, Comparator<? super T> comparator)
+    {
+        return this.slidingMin(length, timestamp, Collections.reverseOrder(comparator));
+    }
+
+    private <R> Stream2<R> slidingByCount(int size, Supplier<SlidingWindow<T, R>> windowFactory)
+    {
+        if (size <= 0)
+        {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+
+        return this.slidingStage(() -> {
+            SlidingWindow<T, R> window = windowFactory.get();
+            long[] nextIndex = new long[]{0};
+
+            return input -> {
+                long index = nextIndex[0]++;
+                R result = window.push(index, input);
+                return index >= size - 1 ? result : NO_OUTPUT;
+            };
+        });
+    }
+
+    private <R> Stream2<R> slidingByTime(
+            long length,
+            ToLongFunction1<? super T> timestamp,
+            Supplier<SlidingWindow<T, R>> windowFactory)
+    {
+        if (length <= 0)
+        {
+            throw new IllegalArgumentException("length must be positive: " + length);
+        }
+
+        return this.slidingStage(() -> {
+            SlidingWindow<T, R> window = windowFactory.get();
+            long[] lastTime = new long[]{Long.MIN_VALUE};
 
-        Spliterator<U> newSpliterator = consumer ->
-                elements.tryAdvance(input ->
-                        consumer.accept(mapper.apply(input)));
+            return input -> {
+                long time = timestamp.apply(input);
 
-        return new Stream2<>(newSpliterator);
+                if (time < lastTime[0])
+                {
+                    throw new IllegalStateException("Timestamp " + time + " is before the previous one, " + lastTime[0]);
+                }
+
+                lastTime[0] = time;
+                return window.push(time, input);
+            };
+        });
     }
 
-    public <U> Stream2<U> flatMap(Function1<? super T, ? extends Stream2<? extends U>> flatMapper)
+    // Each element goes through 'step', which returns the current window's result or NO_OUTPUT. Like windows(), the
+    // new spliterator doesn't split.
+    @SuppressWarnings("unchecked")
+    private <R> Stream2<R> slidingStage(Supplier<Function1<? super T, Object>> stepFactory)
     {
-        Spliterator<U> newSpliterator = new Spliterator<U>() {
-            AtomicReference<Spliterator<? extends U>> currentSpliterator = new AtomicReference<>(emptySpliterator());
+        Function1<? super T, Object> pullStep = stepFactory.get();
+
+        Spliterator<R> newSpliterator = new Spliterator<R>() {
+            private Object output = NO_OUTPUT;
+            private final Consumer1<T> pushOne = input -> this.output = pullStep.apply(input);
 
             @Override
-            public boolean tryAdvance(Consumer1<? super U> consumer)
+            public boolean tryAdvance(Consumer1<? super R> consumer)
             {
-                if (!currentSpliterator.get().tryAdvance(consumer))
+                while (this.output == NO_OUTPUT)
                 {
-                    return elements.tryAdvance(input -> { currentSpliterator.set(flatMapper.apply(input).elements); })
-                            && currentSpliterator.get().tryAdvance(consumer);
+                    if (!elements.tryAdvance(this.pushOne))
+                    {
+                        return false;
+                    }
                 }
 
+                Object output = this.output;
+                this.output = NO_OUTPUT;
+                consumer.accept((R) output);
                 return true;
             }
-        };
 
-        return new Stream2<>(newSpliterator);
-    }
-
-    public Stream2<T> filter(Predicate<? super T> predicate)
-    {
-        return new Stream2<>(consumer ->
-            elements.tryAdvance(input -> {
-                if (predicate.test(input))
+            @Override
+            public void forEachRemaining(Consumer1<? super R> consumer)
+            {
+                if (this.output != NO_OUTPUT)
                 {
-                    consumer.accept(input);
+                    this.tryAdvance(consumer);
                 }
-            }));
-    }
 
-    public boolean anyMatch(Predicate<T> predicate)
-    {
-        boolean[] matched = new boolean[]{false};
+                elements.forEachRemaining(input -> {
+                    Object output = pullStep.apply(input);
 
-        while (!matched[0] && this.elements.tryAdvance(input -> { matched[0] = predicate.test(input); }));
+                    if (output != NO_OUTPUT)
+                    {
+                        consumer.accept((R) output);
+                    }
+                });
+            }
 
-        return matched[0];
-    }
+            @Override
+            public long estimateSize()
+            {
+                return elements.estimateSize();
+            }
 
-    public boolean allMatch(Predicate<T> predicate)
-    {
-        boolean[] matched = new boolean[]{true};
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & Spliterator.ORDERED;
+            }
+        };
 
-        while (matched[0] && this.elements.tryAdvance(input -> { matched[0] = predicate.test(input); }));
+        Function1<Sink<? super R>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, R>(downstream) {
+            private final Function1<? super T, Object> step = stepFactory.get();
 
-        return matched[0];
-    }
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(-1);
+            }
 
-    public Optional<T> findFirst()
-    {
-        AtomicReference<Optional<T>> first = new AtomicReference<>(Optional.empty());
+            @Override
+            public void accept(T input)
+            {
+                Object output = this.step.apply(input);
 
-        this.elements.tryAdvance(input -> { first.set(Optional.of(input)); });
+                if (output != NO_OUTPUT)
+                {
+                    this.downstream.accept((R) output);
+                }
+            }
+        };
 
-        return first.get();
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
     }
 
+    @SuppressWarnings("unchecked")
     public Stream2<T> take(long count)
     {
+        if (this.elements instanceof BarrierSpliterator
+                && ((BarrierSpliterator<T>) this.elements).sortComparator != null
+                && !((BarrierSpliterator<T>) this.elements).isStarted()
+                && count >= 0 && count < Integer.MAX_VALUE - 8)
+        {
+            // sorted(comparator).take(k): select the top k from the sort's upstream instead of sorting everything.
+            Stream2<T> topK = ((Stream2<T>) this.upstream).topK(
+                    (int) count,
+                    ((BarrierSpliterator<T>) this.elements).sortComparator);
+            return this.parallel ? topK.parallel() : topK.sequential();
+        }
+
 //        Spliterator<T> newSpliterator = new Spliterator<T>() {
 //            long takenSoFar = 0;
 //
@@ -153,24 +1965,86 @@ public class Stream2<T>
 //
 //        return new Stream2<>(newSpliterator);
 
-        long[] takenSoFar = new long[]{0};
+        if (this.elements instanceof SliceableSpliterator)
+        {
+            // Slice an index-based source instead of counting elements through a stage.
+            return new Stream2<>(((SliceableSpliterator<? extends T>) this.elements).slice(0, count), this.parallel);
+        }
 
-        return new Stream2<>(consumer -> {
-            if (takenSoFar[0] < count)
+        Spliterator<T> newSpliterator = new Spliterator<T>() {
+            private long takenSoFar = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super T> consumer)
             {
-                ++takenSoFar[0];
-                return elements.tryAdvance(consumer);
+                if (this.takenSoFar < count)
+                {
+                    boolean didAdvance = elements.tryAdvance(consumer);
+
+                    if (didAdvance && ++this.takenSoFar == count)
+                    {
+                        elements.cancel(); // Nothing more will be pulled from upstream.
+                    }
+
+                    return didAdvance;
+                }
+
+                return false;
             }
 
-            return false;
-        });
+            @Override
+            public long estimateSize()
+            {
+                return Math.min(count - this.takenSoFar, elements.estimateSize());
+            }
+
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~Spliterator.SUBSIZED;
+            }
+        };
+
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, T>(downstream) {
+            private long remaining = count;
+
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(size < 0 ? -1 : Math.min(size, count));
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                if (this.remaining > 0)
+                {
+                    --this.remaining;
+                    this.downstream.accept(input);
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return this.remaining == 0 || this.downstream.cancellationRequested();
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, true);
     }
 
     public Stream2<T> takeWhile(Predicate<T> predicate)
     {
         boolean[] isTaking = new boolean[]{true};
 
-        return new Stream2<>(consumer -> {
+        Spliterator<T> newSpliterator = consumer -> {
             if (!isTaking[0])
             {
                 return false;
@@ -187,28 +2061,132 @@ public class Stream2<T>
 
             isTaking[0] &= didAdvance;
             return isTaking[0];
-        });
+        };
+
+        newSpliterator = withCharacteristics(
+                newSpliterator,
+                this.elements,
+                Spliterator.SIZED | Spliterator.SUBSIZED);
+
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, T>(downstream) {
+            private boolean isTaking = true;
+
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(-1);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                if (this.isTaking)
+                {
+                    this.isTaking = predicate.test(input);
+
+                    if (this.isTaking)
+                    {
+                        this.downstream.accept(input);
+                    }
+                }
+            }
+
+            @Override
+            public boolean cancellationRequested()
+            {
+                return !this.isTaking || this.downstream.cancellationRequested();
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, true);
     }
 
     public Stream2<T> drop(long count)
     {
-        long[] droppedSoFar = new long[]{0};
+        if (this.elements instanceof SliceableSpliterator)
+        {
+            // Skip ahead in an index-based source instead of dropping elements one by one.
+            return new Stream2<>(((SliceableSpliterator<? extends T>) this.elements).slice(count, Long.MAX_VALUE), this.parallel);
+        }
 
-        return new Stream2<>(consumer -> {
-            for (; droppedSoFar[0] < count; ++droppedSoFar[0])
+        Spliterator<T> newSpliterator = new Spliterator<T>() {
+            private long droppedSoFar = 0;
+
+            private void dropRemaining()
+            {
+                while (this.droppedSoFar < count && elements.tryAdvance(input -> {}))
+                {
+                    ++this.droppedSoFar;
+                }
+
+                this.droppedSoFar = count;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer1<? super T> consumer)
             {
-                elements.tryAdvance(input -> {});
+                this.dropRemaining();
+                return elements.tryAdvance(consumer);
             }
 
-            return elements.tryAdvance(consumer);
-        });
+            @Override
+            public void forEachRemaining(Consumer1<? super T> consumer)
+            {
+                this.dropRemaining();
+                elements.forEachRemaining(consumer);
+            }
+
+            @Override
+            public long estimateSize()
+            {
+                long size = elements.estimateSize();
+                return size == Long.MAX_VALUE ? size : Math.max(0, size - (count - this.droppedSoFar));
+            }
+
+            @Override
+            public void cancel()
+            {
+                elements.cancel();
+            }
+
+            @Override
+            public int characteristics()
+            {
+                return elements.characteristics() & ~Spliterator.SUBSIZED;
+            }
+        };
+
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, T>(downstream) {
+            private long droppedSoFar = 0;
+
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(size < 0 ? -1 : Math.max(0, size - count));
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                if (this.droppedSoFar < count)
+                {
+                    ++this.droppedSoFar;
+                }
+                else
+                {
+                    this.downstream.accept(input);
+                }
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
     }
 
     public Stream2<T> dropWhile(Predicate<T> predicate)
     {
         boolean[] isDropping = new boolean[]{true};
 
-        return new Stream2<>(consumer -> {
+        Spliterator<T> newSpliterator = consumer -> {
             while (isDropping[0])
             {
                 boolean didAdvance = elements.tryAdvance(input -> {
@@ -231,31 +2209,254 @@ public class Stream2<T>
             }
 
             return elements.tryAdvance(consumer);
-        });
+        };
+
+        newSpliterator = withCharacteristics(
+                newSpliterator,
+                this.elements,
+                Spliterator.SIZED | Spliterator.SUBSIZED);
+
+        Function1<Sink<? super T>, Sink<?>> wrapSink = downstream -> new Sink.Chained<T, T>(downstream) {
+            private boolean isDropping = true;
+
+            @Override
+            public void begin(long size)
+            {
+                this.downstream.begin(-1);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                if (this.isDropping)
+                {
+                    this.isDropping = predicate.test(input);
+
+                    if (this.isDropping)
+                    {
+                        return;
+                    }
+                }
+
+                this.downstream.accept(input);
+            }
+        };
+
+        return new Stream2<>(newSpliterator, this.parallel, this, wrapSink, false);
     }
 
     public List<T> collect()
     {
-        List<T> result = new ArrayList<>();
+        if (this.parallel)
+        {
+            return this.collect(Collectors.toList());
+        }
+
+        ArrayList<T> result = new ArrayList<>();
+
+        this.evaluate(new Sink<T>() {
+            @Override
+            public void begin(long size)
+            {
+                // Presize when the pipeline knows its exact size (SIZED source, no filtering stages).
+                if (size > 0 && size < Integer.MAX_VALUE - 8)
+                {
+                    result.ensureCapacity((int) size);
+                }
+            }
 
-        while (this.elements.tryAdvance(result::add));
+            @Override
+            public void accept(T input)
+            {
+                result.add(input);
+            }
+        }, false);
 
         return result;
     }
 
+    // The elements as an unmodifiable list. Unlike collect(), it never copies elements to grow: they go into a
+    // SpinedBuffer (of exactly the right size, if the pipeline knows its size), which the list is a view of.
+    public List<T> toList()
+    {
+        return this.spined(null).asList();
+    }
+
+    public Object[] toArray()
+    {
+        return this.spined(null).toArray();
+    }
+
+    // The elements in an array from the generator. Of a known size, sequentially, the elements are written
+    // straight into that array; otherwise they are copied into it once, from a SpinedBuffer.
+    public <A> A[] toArray(IntFunction1<A[]> generator)
+    {
+        return this.spined(generator).toArray(generator);
+    }
+
+    private SpinedBuffer<T> spined(IntFunction1<? extends Object[]> newArray)
+    {
+        if (this.parallel)
+        {
+            return spinedBuffer(this.elements);
+        }
+
+        SpinedBuffer<T> buffer = newArray != null ? new SpinedBuffer<>(newArray) : new SpinedBuffer<>();
+
+        this.evaluate(new Sink<T>() {
+            @Override
+            public void begin(long size)
+            {
+                buffer.presize(size);
+            }
+
+            @Override
+            public void accept(T input)
+            {
+                buffer.add(input);
+            }
+        }, false);
+
+        return buffer;
+    }
+
+    // Parallel materialization: a buffer per split, concatenated without copying.
+    private static <T> SpinedBuffer<T> spinedBuffer(Spliterator<? extends T> elements)
+    {
+        return ForkJoinPool.commonPool().invoke(new CollectTask<>(elements, Collector.<T, SpinedBuffer<T>, SpinedBuffer<T>>of(
+                SpinedBuffer::new,
+                SpinedBuffer::add,
+                SpinedBuffer::concat,
+                buffer -> buffer
+        )));
+    }
+
     public <A, R> R collect(Collector<? super T, A, R> collector)
     {
+        if (this.parallel)
+        {
+            Set<Collector.Characteristics> characteristics = collector.characteristics();
+
+            if (characteristics.contains(Collector.Characteristics.CONCURRENT)
+                    && (characteristics.contains(Collector.Characteristics.UNORDERED)
+                            || !this.elements.hasCharacteristics(Spliterator.ORDERED)))
+            {
+                // Every split accumulates straight into one shared container: no per-split containers, no merging.
+                A shared = collector.supplier().get();
+                Consumer2<A, ? super T> accumulator = collector.accumulator();
+
+                ForkJoinPool.commonPool().invoke(new CollectTask<>(this.elements, Collector.<T, A, A>of(
+                        () -> shared,
+                        accumulator::accept,
+                        (acc1, acc2) -> acc1,
+                        (acc) -> acc
+                )));
+
+                return Collectors.finish(collector, shared);
+            }
+
+            A acc = ForkJoinPool.commonPool().invoke(new CollectTask<>(this.elements, collector));
+            return Collectors.finish(collector, acc);
+        }
+
         A acc = collector.supplier().get(); // TODO: rename?
         Consumer2<A, ? super T> accumulator = collector.accumulator();
 
-        while (this.elements.tryAdvance(element -> accumulator.accept(acc, element)));
+        this.evaluate(element -> accumulator.accept(acc, element), false);
 
-        return collector.finalizer().apply(acc);
+        return Collectors.finish(collector, acc);
     }
 
     public void forEach(Consumer1<? super T> consumer)
     {
-        while (this.elements.tryAdvance(consumer));
+        if (this.parallel)
+        {
+            // Unordered: each split feeds the consumer from its own worker thread.
+            this.collect(Collector.<T, Void, Void>of(
+                    () -> null,
+                    (acc, el) -> consumer.accept(el),
+                    (acc1, acc2) -> null,
+                    (acc) -> null,
+                    Collector.Characteristics.CONCURRENT,
+                    Collector.Characteristics.UNORDERED
+            ));
+            return;
+        }
+
+        this.evaluate(consumer::accept, false);
+    }
+
+    // The indexed counterpart of forEach. In parallel, indices still follow the source order as long as the
+    // pipeline's splits are SUBSIZED; otherwise the pipeline runs as one split.
+    public void forEachIndexed(LongObjConsumer2<? super T> consumer)
+    {
+        if (this.parallel)
+        {
+            this.mapIndexed((index, element) -> {
+                consumer.accept(index, element);
+                return null;
+            }).forEach(ignored -> {});
+            return;
+        }
+
+        long[] nextIndex = new long[]{0};
+        this.evaluate(input -> consumer.accept(nextIndex[0]++, input), false);
+    }
+
+    // Turns this single-shot pipeline into a replayable one: each StreamCache.stream2() call starts a new cursor,
+    // and the pipeline itself runs at most once, as far as the furthest cursor gets.
+    public StreamCache<T> cache()
+    {
+        return new StreamCache<>(this.elements, Long.MAX_VALUE);
+    }
+
+    // Like cache(), but keeps only about the last maxRetained elements.
+    public StreamCache<T> cache(long maxRetained)
+    {
+        return new StreamCache<>(this.elements, maxRetained);
+    }
+
+    // The elements as a reactive publisher for a single subscriber. Elements are pulled from the pipeline only as
+    // the subscriber requests them, on the thread that calls request.
+    public Flow.Publisher<T> toPublisher()
+    {
+        return new SpliteratorPublisher<>(this.elements);
+    }
+
+    // Runs a sequential terminal operation: wraps the terminal sink in the sinks of each fusable stage back to the
+    // first stage without one, then pushes that stage's elements through the resulting chain in a single loop.
+    @SuppressWarnings("unchecked")
+    private void evaluate(Sink<? super T> terminal, boolean isShortCircuit)
+    {
+        Sink<Object> sink = (Sink<Object>) terminal;
+        Stream2<?> stage = this;
+
+        for (; stage.upstream != null; stage = stage.upstream)
+        {
+            sink = ((Function1<Sink<Object>, Sink<Object>>) (Function1<?, ?>) stage.wrapSink).apply(sink);
+            isShortCircuit |= stage.isShortCircuit;
+        }
+
+        Spliterator<Object> source = (Spliterator<Object>) stage.elements;
+
+        sink.begin(source.hasCharacteristics(Spliterator.SIZED) ? source.estimateSize() : -1);
+
+        if (isShortCircuit)
+        {
+            while (!sink.cancellationRequested() && source.tryAdvance(sink));
+
+            if (sink.cancellationRequested())
+            {
+                // Stopped early: a source working ahead of demand (a publisher, say) can stop.
+                source.cancel();
+            }
+        }
+        else
+        {
+            source.forEachRemaining(sink);
+        }
+
+        sink.end();
     }
 
     public static void main(String[] args)
@@ -0,0 +1,220 @@
+package custom.streams;
+
+import java.util.NoSuchElementException;
+
+// A replayable view of a single-shot pipeline, from Stream.cache() or Stream2.cache(). The upstream is pulled lazily,
+// one element at a time and only as far as the furthest cursor has asked, into a buffer of fixed-size chunks (so
+// growing it never copies elements). Every stream()/stream2() call opens an independent cursor from the start, and
+// cursors that are behind read the buffer without locking.
+//
+// With a retention bound, the chunks form a ring: once more than maxRetained elements are buffered, each new chunk
+// replaces the oldest, and a cursor that then needs a dropped element fails with IllegalStateException. That suits
+// consumers advancing roughly together.
+public final class StreamCache<T>
+{
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Spliterator<? extends T> source;
+    private final long sourceSize; // -1 if the source isn't SIZED.
+    private final long maxRetainedChunks;
+    private final Consumer1<T> append = this::append;
+
+    // Written only under the lock; a reader that sees count > index also sees the element at index. Chunk i is at
+    // slot i % chunks.length: the array grows until it holds maxRetainedChunks, then wraps around.
+    private volatile Chunk[] chunks;
+    private volatile long count = 0;
+    private volatile boolean isExhausted = false;
+
+    StreamCache(Spliterator<? extends T> source, long maxRetained)
+    {
+        if (maxRetained <= 0)
+        {
+            throw new IllegalArgumentException("maxRetained must be positive: " + maxRetained);
+        }
+
+        this.source = source;
+        this.sourceSize = source.hasCharacteristics(Spliterator.SIZED) ? source.estimateSize() : -1;
+        // Whole chunks, rounding up, plus the one being filled.
+        this.maxRetainedChunks = maxRetained == Long.MAX_VALUE
+                ? Long.MAX_VALUE
+                : (maxRetained - 1 >> CHUNK_SHIFT) + 2;
+        this.chunks = new Chunk[(int) Math.min(4, this.maxRetainedChunks)];
+    }
+
+    // A new cursor over the cached elements, from the first one.
+    public Stream2<T> stream2()
+    {
+        return Stream2.of(new Cursor());
+    }
+
+    public Stream<T> stream()
+    {
+        Cursor cursor = new Cursor();
+
+        return Stream.of(new Iterator<T>() {
+            @Override
+            public boolean hasNext()
+            {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public T next()
+            {
+                if (!cursor.hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return cursor.next();
+            }
+        });
+    }
+
+    // Elements pulled from the upstream so far (including any dropped since).
+    public long cachedCount()
+    {
+        return this.count;
+    }
+
+    public boolean isFullyCached()
+    {
+        return this.isExhausted;
+    }
+
+    // Whether an element exists at the index, pulling from the upstream if needed.
+    private boolean isAvailable(long index)
+    {
+        if (index < this.count)
+        {
+            return true;
+        }
+
+        if (this.isExhausted)
+        {
+            return false;
+        }
+
+        synchronized (this)
+        {
+            while (index >= this.count && !this.isExhausted)
+            {
+                if (!this.source.tryAdvance(this.append))
+                {
+                    this.isExhausted = true;
+                }
+            }
+
+            return index < this.count;
+        }
+    }
+
+    // Called under the lock.
+    private void append(T element)
+    {
+        long index = this.count;
+        long chunkIndex = index >> CHUNK_SHIFT;
+        Chunk[] chunks = this.chunks;
+
+        if ((index & CHUNK_MASK) == 0)
+        {
+            if (chunkIndex == chunks.length && chunks.length < this.maxRetainedChunks)
+            {
+                // Every chunk so far is still retained, so slots match chunk indices and a plain copy keeps them.
+                Chunk[] grown = new Chunk[(int) Math.min(chunks.length * 2L, this.maxRetainedChunks)];
+                System.arraycopy(chunks, 0, grown, 0, chunks.length);
+                chunks = grown;
+            }
+
+            // Once the ring is full, this replaces the oldest chunk.
+            chunks[(int) (chunkIndex % chunks.length)] = new Chunk(chunkIndex);
+            this.chunks = chunks;
+        }
+
+        chunks[(int) (chunkIndex % chunks.length)].elements[(int) (index & CHUNK_MASK)] = element;
+        this.count = index + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T get(long index)
+    {
+        long chunkIndex = index >> CHUNK_SHIFT;
+        Chunk[] chunks = this.chunks;
+        Chunk chunk = chunks[(int) (chunkIndex % chunks.length)];
+
+        if (chunk.index != chunkIndex)
+        {
+            throw new IllegalStateException("Element " + index + " was dropped from the cache (retention bound)");
+        }
+
+        return (T) chunk.elements[(int) (index & CHUNK_MASK)];
+    }
+
+    // A replaced chunk is left intact, so a cursor that fetched it before the replacement still reads it correctly.
+    private static final class Chunk
+    {
+        final long index;
+        final Object[] elements = new Object[CHUNK_SIZE];
+
+        Chunk(long index)
+        {
+            this.index = index;
+        }
+    }
+
+    private final class Cursor implements Spliterator<T>
+    {
+        private long position = 0;
+
+        boolean hasNext()
+        {
+            return StreamCache.this.isAvailable(this.position);
+        }
+
+        T next()
+        {
+            return StreamCache.this.get(this.position++);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer1<? super T> consumer)
+        {
+            if (!this.hasNext())
+            {
+                return false;
+            }
+
+            consumer.accept(this.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer1<? super T> consumer)
+        {
+            while (this.hasNext())
+            {
+                // Replay the already-cached run without re-checking availability per element.
+                for (long end = StreamCache.this.count; this.position < end; )
+                {
+                    consumer.accept(this.next());
+                }
+            }
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            long size = StreamCache.this.isExhausted ? StreamCache.this.count : StreamCache.this.sourceSize;
+            return size < 0 ? Long.MAX_VALUE : size - this.position;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            boolean isSized = StreamCache.this.isExhausted || StreamCache.this.sourceSize >= 0;
+            return Spliterator.ORDERED | (isSized ? Spliterator.SIZED : 0);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package custom.streams;
+
+import java.util.Arrays;
+
+// Sliding sum in O(1) per element by subtract-on-evict: the running sum gains each new value and loses each evicted
+// one. Only for an invertible combine (long addition; overflow wraps around and cancels out), unlike TwoStackWindow.
+final class SubtractingSumWindow<T> implements SlidingWindow<T, Long>
+{
+    private final long length;
+    private final ToLongFunction1<? super T> value;
+
+    // Ring buffer of the window's elements, oldest at head.
+    private long[] positions = new long[16];
+    private long[] values = new long[16];
+    private int head = 0;
+    private int size = 0;
+    private long sum = 0;
+
+    SubtractingSumWindow(long length, ToLongFunction1<? super T> value)
+    {
+        this.length = length;
+        this.value = value;
+    }
+
+    @Override
+    public Long push(long position, T element)
+    {
+        long value = this.value.apply(element);
+        int mask = this.values.length - 1;
+
+        while (this.size > 0 && position - this.positions[this.head] >= this.length)
+        {
+            this.sum -= this.values[this.head];
+            this.head = (this.head + 1) & mask;
+            --this.size;
+        }
+
+        if (this.size == this.values.length)
+        {
+            this.grow();
+            mask = this.values.length - 1;
+        }
+
+        int tail = (this.head + this.size) & mask;
+        this.positions[tail] = position;
+        this.values[tail] = value;
+        ++this.size;
+        this.sum += value;
+        return this.sum;
+    }
+
+    // Doubles the capacity, unwrapping the ring so it starts at 0.
+    private void grow()
+    {
+        int capacity = this.values.length;
+        long[] positions = Arrays.copyOf(this.positions, capacity * 2);
+        long[] values = Arrays.copyOf(this.values, capacity * 2);
+        System.arraycopy(this.positions, 0, positions, capacity, this.head);
+        System.arraycopy(this.values, 0, values, capacity, this.head);
+        System.arraycopy(positions, this.head, positions, 0, capacity);
+        System.arraycopy(values, this.head, values, 0, capacity);
+        this.positions = positions;
+        this.values = values;
+        this.head = 0;
+    }
+}
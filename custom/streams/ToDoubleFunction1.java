@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface ToDoubleFunction1<T> // ToDoubleFunction<T>
+{
+    double apply(T input1);
+}
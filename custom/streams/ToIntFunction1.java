@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface ToIntFunction1<T> // ToIntFunction<T>
+{
+    int apply(T input1);
+}
@@ -0,0 +1,6 @@
+package custom.streams;
+
+public interface ToLongFunction1<T> // ToLongFunction<T>
+{
+    long apply(T input1);
+}
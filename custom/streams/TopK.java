@@ -0,0 +1,152 @@
+package custom.streams;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// The k smallest elements by a comparator, for sorted(comparator).take(k) fused into one stage: a bounded heap with
+// the worst kept element on top, so n elements take O(n log k) time and O(k) memory. Ties are broken by encounter
+// order (earlier wins), which makes the result the same as a stable sort followed by take(k).
+final class TopK<T>
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int k;
+    private final Comparator<? super T> comparator;
+
+    private Object[] heap;
+    private long[] sequence; // Encounter order of each heap entry.
+    private int size = 0;
+    private long nextSequence = 0;
+
+    TopK(int k, Comparator<? super T> comparator)
+    {
+        this.k = k;
+        this.comparator = comparator;
+        this.heap = new Object[Math.min(k, INITIAL_CAPACITY)];
+        this.sequence = new long[this.heap.length];
+    }
+
+    void add(T element)
+    {
+        long sequence = this.nextSequence++;
+
+        if (this.size < this.k)
+        {
+            if (this.size == this.heap.length)
+            {
+                int capacity = (int) Math.min(this.k, this.heap.length * 2L);
+                this.heap = Arrays.copyOf(this.heap, capacity);
+                this.sequence = Arrays.copyOf(this.sequence, capacity);
+            }
+
+            this.siftUp(this.size++, element, sequence);
+        }
+        else if (this.k > 0 && this.comparator.compare(element, this.elementAt(0)) < 0)
+        {
+            // Strictly better than the worst kept element; an equal one would lose the tie as the later of the two.
+            this.siftDown(0, element, sequence);
+        }
+    }
+
+    // Adds every element of 'later', whose elements all come after this one's in encounter order (the combiner for
+    // parallel top-K). Consumes 'later'.
+    TopK<T> addAll(TopK<T> later)
+    {
+        for (Object element : later.toSortedArray())
+        {
+            this.add(this.cast(element));
+        }
+
+        return this;
+    }
+
+    // The kept elements, best first. Consumes the heap.
+    Object[] toSortedArray()
+    {
+        Object[] sorted = new Object[this.size];
+
+        while (this.size > 0)
+        {
+            sorted[this.size - 1] = this.heap[0];
+
+            int last = --this.size;
+            Object element = this.heap[last];
+            long sequence = this.sequence[last];
+            this.heap[last] = null;
+
+            if (last > 0)
+            {
+                this.siftDown(0, this.cast(element), sequence);
+            }
+        }
+
+        return sorted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object element)
+    {
+        return (T) element;
+    }
+
+    private T elementAt(int index)
+    {
+        return this.cast(this.heap[index]);
+    }
+
+    // Whether (element1, sequence1) sorts after (element2, sequence2).
+    private boolean isWorse(T element1, long sequence1, T element2, long sequence2)
+    {
+        int comparison = this.comparator.compare(element1, element2);
+        return comparison != 0 ? comparison > 0 : sequence1 > sequence2;
+    }
+
+    private void siftUp(int index, T element, long sequence)
+    {
+        while (index > 0)
+        {
+            int parent = (index - 1) >>> 1;
+
+            if (!this.isWorse(element, sequence, this.elementAt(parent), this.sequence[parent]))
+            {
+                break;
+            }
+
+            this.heap[index] = this.heap[parent];
+            this.sequence[index] = this.sequence[parent];
+            index = parent;
+        }
+
+        this.heap[index] = element;
+        this.sequence[index] = sequence;
+    }
+
+    private void siftDown(int index, T element, long sequence)
+    {
+        int half = this.size >>> 1;
+
+        while (index < half)
+        {
+            int child = 2 * index + 1;
+            int right = child + 1;
+
+            if (right < this.size
+                    && this.isWorse(this.elementAt(right), this.sequence[right], this.elementAt(child), this.sequence[child]))
+            {
+                child = right;
+            }
+
+            if (!this.isWorse(this.elementAt(child), this.sequence[child], element, sequence))
+            {
+                break;
+            }
+
+            this.heap[index] = this.heap[child];
+            this.sequence[index] = this.sequence[child];
+            index = child;
+        }
+
+        this.heap[index] = element;
+        this.sequence[index] = sequence;
+    }
+}
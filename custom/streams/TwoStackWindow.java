@@ -0,0 +1,108 @@
+package custom.streams;
+
+import java.util.Arrays;
+
+// Sliding aggregation over any monoid in amortized O(1) per element, by the two-stack technique: new elements go on
+// the back stack, which keeps the aggregate of all of them; evictions pop the front stack, where every entry keeps
+// the aggregate from itself to the newest front element. When the front runs out, the back is moved over in one go,
+// which each element goes through only once. The window's aggregate is then front top + back.
+final class TwoStackWindow<T, A> implements SlidingWindow<T, A>
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long length;
+    private final Function1<? super T, ? extends A> lift;
+    private final Monoid<A> monoid;
+
+    // Newest elements, oldest first.
+    private long[] backPositions = new long[INITIAL_CAPACITY];
+    private Object[] backValues = new Object[INITIAL_CAPACITY];
+    private int backSize = 0;
+    private A backAggregate;
+
+    // Oldest elements, oldest on top (last).
+    private long[] frontPositions = new long[INITIAL_CAPACITY];
+    private Object[] frontAggregates = new Object[INITIAL_CAPACITY];
+    private int frontSize = 0;
+
+    TwoStackWindow(long length, Function1<? super T, ? extends A> lift, Monoid<A> monoid)
+    {
+        this.length = length;
+        this.lift = lift;
+        this.monoid = monoid;
+        this.backAggregate = monoid.identity();
+    }
+
+    @Override
+    public A push(long position, T element)
+    {
+        A value = this.lift.apply(element);
+        this.evict(position);
+
+        if (this.backSize == this.backValues.length)
+        {
+            this.backPositions = Arrays.copyOf(this.backPositions, this.backSize * 2);
+            this.backValues = Arrays.copyOf(this.backValues, this.backSize * 2);
+        }
+
+        this.backPositions[this.backSize] = position;
+        this.backValues[this.backSize++] = value;
+        this.backAggregate = this.monoid.combine(this.backAggregate, value);
+
+        return this.frontSize == 0
+                ? this.backAggregate
+                : this.monoid.combine(this.cast(this.frontAggregates[this.frontSize - 1]), this.backAggregate);
+    }
+
+    private void evict(long position)
+    {
+        while (true)
+        {
+            if (this.frontSize == 0)
+            {
+                if (this.backSize == 0 || position - this.backPositions[0] < this.length)
+                {
+                    return;
+                }
+
+                this.flip();
+            }
+
+            if (position - this.frontPositions[this.frontSize - 1] < this.length)
+            {
+                return;
+            }
+
+            this.frontAggregates[--this.frontSize] = null;
+        }
+    }
+
+    // Moves the back stack onto the (empty) front stack, newest first, so the oldest ends up on top.
+    private void flip()
+    {
+        if (this.frontAggregates.length < this.backSize)
+        {
+            this.frontPositions = new long[this.backValues.length];
+            this.frontAggregates = new Object[this.backValues.length];
+        }
+
+        A aggregate = this.monoid.identity();
+
+        for (int i = this.backSize - 1; i >= 0; --i)
+        {
+            aggregate = this.monoid.combine(this.cast(this.backValues[i]), aggregate);
+            this.frontPositions[this.frontSize] = this.backPositions[i];
+            this.frontAggregates[this.frontSize++] = aggregate;
+            this.backValues[i] = null;
+        }
+
+        this.backSize = 0;
+        this.backAggregate = this.monoid.identity();
+    }
+
+    @SuppressWarnings("unchecked")
+    private A cast(Object value)
+    {
+        return (A) value;
+    }
+}
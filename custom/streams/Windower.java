@@ -0,0 +1,128 @@
+package custom.streams;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+// Shared state machine behind grouped/batched/windowed/sliding in both engines. Elements are pushed one at a time
+// into a ring buffer; a window of 'size' elements is emitted every 'step' elements. With 'reuse', every window is the
+// same read-only view of the ring buffer (valid until the next element is pushed), so windowing allocates nothing
+// per window; otherwise each window is copied into its own list.
+final class Windower<T>
+{
+    private final int size;
+    private final int step;
+    private final boolean emitPartial;
+    private final boolean reuse;
+
+    private final Object[] ring;
+    private int head = 0;
+    private int count = 0;
+
+    // Evicting is deferred until the next push, so that a reused view stays intact while downstream reads it.
+    private int pendingEvictions = 0;
+    private long pendingSkips = 0;
+
+    private final List<T> view = new AbstractList<T>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index)
+        {
+            if (index < 0 || index >= Windower.this.count)
+            {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            return (T) Windower.this.ring[(Windower.this.head + index) % Windower.this.ring.length];
+        }
+
+        @Override
+        public int size()
+        {
+            return Windower.this.count;
+        }
+    };
+
+    Windower(int size, int step, boolean emitPartial, boolean reuse)
+    {
+        if (size <= 0 || step <= 0)
+        {
+            throw new IllegalArgumentException("size and step must be positive: size " + size + ", step " + step);
+        }
+
+        this.size = size;
+        this.step = step;
+        this.emitPartial = emitPartial;
+        this.reuse = reuse;
+        this.ring = new Object[size];
+    }
+
+    // Adds an element, returning the window it completes, or null.
+    List<T> push(T element)
+    {
+        this.evictPending();
+
+        if (this.pendingSkips > 0)
+        {
+            // Elements between windows when step > size.
+            --this.pendingSkips;
+            return null;
+        }
+
+        this.ring[(this.head + this.count) % this.ring.length] = element;
+        ++this.count;
+
+        if (this.count < this.size)
+        {
+            return null;
+        }
+
+        if (this.step >= this.size)
+        {
+            this.pendingEvictions = this.size;
+            this.pendingSkips = this.step - this.size;
+        }
+        else
+        {
+            this.pendingEvictions = this.step;
+        }
+
+        return this.window();
+    }
+
+    // The trailing partial window, if partial windows are emitted and one is pending; otherwise null.
+    List<T> flush()
+    {
+        this.evictPending();
+
+        if (!this.emitPartial || this.count == 0)
+        {
+            return null;
+        }
+
+        List<T> window = this.window();
+        this.pendingEvictions = this.count;
+        return window;
+    }
+
+    // Whether every window is the same view, valid only until the next push.
+    boolean isReusing()
+    {
+        return this.reuse;
+    }
+
+    private List<T> window()
+    {
+        return this.reuse ? this.view : new ArrayList<>(this.view);
+    }
+
+    private void evictPending()
+    {
+        for (; this.pendingEvictions > 0; --this.pendingEvictions)
+        {
+            this.ring[this.head] = null;
+            this.head = (this.head + 1) % this.ring.length;
+            --this.count;
+        }
+    }
+}